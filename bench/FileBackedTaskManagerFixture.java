@@ -0,0 +1,72 @@
+import benchmarks.FileBackedTaskManagerBenchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FileBackedTaskManagerFixture implements FileBackedTaskManagerBenchmark.Fixture {
+    private SnapshotFormat format;
+    private File journaledFile;
+    private File snapshotFile;
+    private FileBackedTaskManager journaled;
+    private FileBackedTaskManager snapshotOnly;
+    private Task updated;
+
+    @Override
+    public void setUp(int size, String format) throws IOException {
+        this.format = SnapshotFormat.valueOf(format);
+        journaledFile = Files.createTempFile("tasks-bench", ".csv").toFile();
+        snapshotFile = Files.createTempFile("tasks-bench", ".csv").toFile();
+        journaled = new FileBackedTaskManager(journaledFile, Integer.MAX_VALUE, this.format);
+        snapshotOnly = new FileBackedTaskManager(snapshotFile, 0, this.format);
+        snapshotOnly.addAll(batch(size));
+        journaled.addAll(batch(size));
+        updated = snapshotOnly.getTask(2);
+    }
+
+    /**
+     * Эпик с {@code size} подзадачами и {@code size} задач, чередующихся по времени.
+     */
+    private static List<Task> batch(int size) {
+        List<Task> items = new ArrayList<>(2 * size + 1);
+        items.add(new Epic("Epic", "Description", 0, TaskStatus.NEW));
+        for (int i = 0; i < size; i++) {
+            items.add(new Task("Task " + i, "Description", 0, TaskStatus.NEW,
+                    Duration.ofMinutes(30), TaskManagerFixture.START.plusHours(2L * i)));
+            items.add(new Subtask("Subtask " + i, "Description", 0, TaskStatus.NEW, 0,
+                    Duration.ofMinutes(30), TaskManagerFixture.START.plusHours(2L * i + 1)));
+        }
+        return items;
+    }
+
+    @Override
+    public void tearDown() {
+        journaled.close();
+        snapshotOnly.close();
+        new File(journaledFile.getPath() + ".journal").delete();
+        journaledFile.delete();
+        snapshotFile.delete();
+    }
+
+    @Override
+    public Object addTask() {
+        Task task = new Task("Task", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(30), null);
+        journaled.addTask(task);
+        journaled.deleteTask(task.getId());
+        return task;
+    }
+
+    @Override
+    public void save() {
+        updated.setStatus(updated.getStatus() == TaskStatus.NEW ? TaskStatus.DONE : TaskStatus.NEW);
+        snapshotOnly.updateTask(updated);
+    }
+
+    @Override
+    public Object load() {
+        return FileBackedTaskManager.loadFromFile(snapshotFile, 0, format);
+    }
+}
@@ -0,0 +1,41 @@
+import benchmarks.HistoryManagerBenchmark;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+public class HistoryManagerFixture implements HistoryManagerBenchmark.Fixture {
+    private InMemoryHistoryManager history;
+    private Task[] tasks;
+    private Random random;
+    private int size;
+
+    @Override
+    public void setUp(int size, long seed) {
+        this.size = size;
+        history = new InMemoryHistoryManager();
+        tasks = new Task[size];
+        for (int i = 0; i < size; i++) {
+            tasks[i] = new Task("Task " + i, "Description", i + 1, TaskStatus.NEW, Duration.ZERO, null);
+            history.add(tasks[i]);
+        }
+        random = new Random(seed);
+    }
+
+    @Override
+    public void add() {
+        history.add(tasks[random.nextInt(size)]);
+    }
+
+    @Override
+    public void removeAndAdd() {
+        Task task = tasks[random.nextInt(size)];
+        history.remove(task.getId());
+        history.add(task);
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return history.getHistory();
+    }
+}
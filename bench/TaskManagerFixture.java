@@ -0,0 +1,69 @@
+import benchmarks.TaskManagerBenchmark;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+
+public class TaskManagerFixture implements TaskManagerBenchmark.Fixture {
+    static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private InMemoryTaskManager manager;
+    private Epic epic;
+    private Subtask[] subtasks;
+    private Random random;
+    private LocalDateTime freeTime;
+    private int size;
+
+    @Override
+    public void setUp(int size, long seed) {
+        this.size = size;
+        manager = new InMemoryTaskManager();
+        for (int i = 0; i < size; i++) {
+            manager.addTask(new Task("Task " + i, "Description", 0, TaskStatus.NEW,
+                    Duration.ofMinutes(30), START.plusHours(i)));
+        }
+        epic = new Epic("Epic", "Description", 0, TaskStatus.NEW);
+        manager.addEpic(epic);
+        subtasks = new Subtask[size];
+        LocalDateTime subtaskStart = START.plusHours(size);
+        for (int i = 0; i < size; i++) {
+            subtasks[i] = new Subtask("Subtask " + i, "Description", 0, TaskStatus.NEW, epic.getId(),
+                    Duration.ofMinutes(30), subtaskStart.plusHours(i));
+            manager.addSubtask(subtasks[i]);
+        }
+        freeTime = subtaskStart.plusHours(size);
+        random = new Random(seed);
+    }
+
+    @Override
+    public Object addTask() {
+        Task task = new Task("Task", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(30), freeTime);
+        manager.addTask(task);
+        manager.deleteTask(task.getId());
+        return task;
+    }
+
+    @Override
+    public Object updateSubtask() {
+        Subtask subtask = subtasks[random.nextInt(size)];
+        subtask.setStatus(subtask.getStatus() == TaskStatus.NEW ? TaskStatus.DONE : TaskStatus.NEW);
+        manager.updateSubtask(subtask);
+        return subtask;
+    }
+
+    @Override
+    public List<Subtask> getSubtasksOfEpic() {
+        return manager.getSubtasksOfEpic(epic.getId());
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        return manager.getPrioritizedTasks();
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasksPage() {
+        return manager.getPrioritizedTasks(START.plusHours(random.nextInt(size)), 50);
+    }
+}
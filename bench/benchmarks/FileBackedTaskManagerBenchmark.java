@@ -0,0 +1,81 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность сохранения и загрузки FileBackedTaskManager для снимков из {@code size} задач
+ * и {@code size} подзадач. Файлы создаются во временном каталоге, результат зависит от его диска.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class FileBackedTaskManagerBenchmark {
+    @Param({"1000", "10000"})
+    int size;
+
+    @Param({"CSV", "BINARY"})
+    String format;
+
+    private Fixture fixture;
+
+    public interface Fixture {
+        void setUp(int size, String format) throws Exception;
+
+        void tearDown();
+
+        /**
+         * Добавление задачи с записью в журнал; задача удаляется, чтобы снимок не рос.
+         */
+        Object addTask();
+
+        /**
+         * Обновление задачи в менеджере без журнала, то есть полная перезапись снимка.
+         */
+        void save();
+
+        Object load();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = Fixtures.create("FileBackedTaskManagerFixture", Fixture.class);
+        fixture.setUp(size, format);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.tearDown();
+    }
+
+    @Benchmark
+    public Object addTask() {
+        return fixture.addTask();
+    }
+
+    @Benchmark
+    public void save() {
+        fixture.save();
+    }
+
+    @Benchmark
+    public Object load() {
+        return fixture.load();
+    }
+}
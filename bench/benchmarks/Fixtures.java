@@ -0,0 +1,21 @@
+package benchmarks;
+
+/**
+ * Классы менеджеров лежат в пакете по умолчанию, а JMH не принимает бенчмарки из него. Поэтому бенчмарки
+ * работают через интерфейсы этого пакета, а их реализации (фикстуры) лежат рядом с менеджерами и
+ * загружаются по имени один раз на запуск. Вызов через интерфейс с единственной реализацией JIT встраивает.
+ */
+final class Fixtures {
+    static final long SEED = 42;
+
+    private Fixtures() {
+    }
+
+    static <T> T create(String className, Class<T> type) {
+        try {
+            return type.cast(Class.forName(className).getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Не удалось создать фикстуру " + className, e);
+        }
+    }
+}
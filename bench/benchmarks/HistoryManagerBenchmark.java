@@ -0,0 +1,69 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Операции InMemoryHistoryManager на истории из {@code size} просмотренных задач.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class HistoryManagerBenchmark {
+    @Param({"1000", "10000", "100000"})
+    int size;
+
+    private Fixture fixture;
+
+    public interface Fixture {
+        void setUp(int size, long seed);
+
+        /**
+         * Повторный просмотр случайной задачи: она переносится в конец истории.
+         */
+        void add();
+
+        /**
+         * Удаление случайной задачи из истории с немедленным возвратом, чтобы размер не менялся.
+         */
+        void removeAndAdd();
+
+        Object getHistory();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = Fixtures.create("HistoryManagerFixture", Fixture.class);
+        fixture.setUp(size, Fixtures.SEED);
+    }
+
+    @Benchmark
+    public void add() {
+        fixture.add();
+    }
+
+    @Benchmark
+    public void removeAndAdd() {
+        fixture.removeAndAdd();
+    }
+
+    @Benchmark
+    public Object getHistory() {
+        return fixture.getHistory();
+    }
+}
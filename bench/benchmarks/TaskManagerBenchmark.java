@@ -0,0 +1,87 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие пути InMemoryTaskManager на менеджере из {@code size} задач и эпике из {@code size} подзадач.
+ * Данные строятся с фиксированным seed, поэтому каждый запуск измеряет одно и то же состояние.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class TaskManagerBenchmark {
+    @Param({"1000", "10000", "100000"})
+    int size;
+
+    private Fixture fixture;
+
+    public interface Fixture {
+        void setUp(int size, long seed);
+
+        /**
+         * Добавляет задачу и сразу удаляет её, чтобы размер менеджера не рос между вызовами.
+         */
+        Object addTask();
+
+        /**
+         * Меняет статус случайной подзадачи большого эпика и вызывает updateSubtask.
+         */
+        Object updateSubtask();
+
+        Object getSubtasksOfEpic();
+
+        Object getPrioritizedTasks();
+
+        /**
+         * Страница из 50 задач по приоритету, начиная со случайного времени.
+         */
+        Object getPrioritizedTasksPage();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = Fixtures.create("TaskManagerFixture", Fixture.class);
+        fixture.setUp(size, Fixtures.SEED);
+    }
+
+    @Benchmark
+    public Object addTask() {
+        return fixture.addTask();
+    }
+
+    @Benchmark
+    public Object updateSubtask() {
+        return fixture.updateSubtask();
+    }
+
+    @Benchmark
+    public Object getSubtasksOfEpic() {
+        return fixture.getSubtasksOfEpic();
+    }
+
+    @Benchmark
+    public Object getPrioritizedTasks() {
+        return fixture.getPrioritizedTasks();
+    }
+
+    @Benchmark
+    public Object getPrioritizedTasksPage() {
+        return fixture.getPrioritizedTasksPage();
+    }
+}
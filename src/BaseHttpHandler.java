@@ -0,0 +1,130 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Общая часть обработчиков HTTP API: разбор пути и параметров, ответы и отображение ошибок на коды.
+ * Некорректный запрос — 400, пересечение по времени — 406, прочие ошибки — 500.
+ */
+abstract class BaseHttpHandler implements HttpHandler {
+    protected final TaskManager manager;
+
+    protected BaseHttpHandler(TaskManager manager) {
+        this.manager = manager;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            handleRequest(exchange, pathSegments(exchange));
+        } catch (TaskJson.MalformedJsonException | BadRequestException e) {
+            sendText(exchange, 400, error(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            sendText(exchange, 406, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            sendText(exchange, 500, error("Внутренняя ошибка сервера"));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * {@code path} — сегменты пути без пустых, например {@code ["tasks", "5"]}.
+     */
+    protected abstract void handleRequest(HttpExchange exchange, String[] path) throws IOException;
+
+    protected void sendText(HttpExchange exchange, int code, String json) throws IOException {
+        sendText(exchange, code, json, "application/json;charset=utf-8");
+    }
+
+    protected void sendText(HttpExchange exchange, int code, String text, String contentType) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(code, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    protected void sendNotFound(HttpExchange exchange) throws IOException {
+        sendText(exchange, 404, error("Не найдено"));
+    }
+
+    protected void sendMethodNotAllowed(HttpExchange exchange) throws IOException {
+        sendText(exchange, 405, error("Метод не поддерживается"));
+    }
+
+    protected static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    protected static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                parameters.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+            }
+        }
+        return parameters;
+    }
+
+    protected static int intParameter(Map<String, String> parameters, String name, int defaultValue) {
+        String value = parameters.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed < 0) {
+                throw new BadRequestException("Параметр " + name + " не может быть отрицательным");
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Параметр " + name + " должен быть целым числом");
+        }
+    }
+
+    protected static int id(String segment) {
+        try {
+            return Integer.parseInt(segment);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Некорректный идентификатор: " + segment);
+        }
+    }
+
+    private static String[] pathSegments(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getPath();
+        return path.chars().allMatch(c -> c == '/') ? new String[0] : path.replaceAll("^/+|/+$", "").split("/+");
+    }
+
+    private static String decode(String value) {
+        return java.net.URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private static String error(String message) {
+        StringBuilder out = new StringBuilder("{\"error\":");
+        TaskJson.writeString(message, out);
+        return out.append('}').toString();
+    }
+
+    static class BadRequestException extends RuntimeException {
+        BadRequestException(String message) {
+            super(message);
+        }
+    }
+}
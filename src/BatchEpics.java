@@ -0,0 +1,78 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Привязка подзадач пачки {@code addAll} к эпикам из той же пачки.
+ * <p>
+ * Подзадача указывает на эпик пачки его исходным id, поэтому ссылка должна быть однозначной: на этот id
+ * не может претендовать несколько эпиков пачки или эпик, уже сохранённый в менеджере. Сопоставление
+ * выполняется один раз до выдачи новых id и дальше хранится как ссылка на объект эпика,
+ * так что перенумерация эпиков на него не влияет.
+ */
+class BatchEpics {
+    private final Map<Subtask, Epic> epicsBySubtask;
+
+    private BatchEpics(Map<Subtask, Epic> epicsBySubtask) {
+        this.epicsBySubtask = epicsBySubtask;
+    }
+
+    /**
+     * Сопоставляет подзадачи пачки с эпиками пачки, пока у всех ещё исходные id.
+     *
+     * @param existingEpic есть ли в менеджере эпик с таким id
+     * @throws IllegalArgumentException если ссылка подзадачи на эпик неоднозначна
+     */
+    static BatchEpics link(Collection<? extends Task> items, IntPredicate existingEpic) {
+        Map<Integer, List<Epic>> epicsById = new HashMap<>();
+        for (Task task : items) {
+            if (task instanceof Epic) {
+                epicsById.computeIfAbsent(task.getId(), id -> new ArrayList<>(1)).add((Epic) task);
+            }
+        }
+        Map<Subtask, Epic> epicsBySubtask = new IdentityHashMap<>();
+        if (epicsById.isEmpty()) {
+            return new BatchEpics(epicsBySubtask);
+        }
+        for (Task task : items) {
+            if (!(task instanceof Subtask)) {
+                continue;
+            }
+            int epicId = ((Subtask) task).getEpicId();
+            List<Epic> candidates = epicsById.get(epicId);
+            if (candidates == null) {
+                continue;
+            }
+            if (candidates.size() > 1) {
+                throw new IllegalArgumentException("Подзадача ссылается на id " + epicId
+                        + ", который в пачке носят несколько эпиков");
+            }
+            if (existingEpic.test(epicId)) {
+                throw new IllegalArgumentException("Подзадача ссылается на id " + epicId
+                        + ", который носит и эпик пачки, и уже сохранённый эпик");
+            }
+            epicsBySubtask.put((Subtask) task, candidates.get(0));
+        }
+        return new BatchEpics(epicsBySubtask);
+    }
+
+    /**
+     * Эпик пачки, к которому относится подзадача, или {@code null}, если она ссылается на сохранённый эпик.
+     */
+    Epic epicOf(Subtask subtask) {
+        return epicsBySubtask.get(subtask);
+    }
+
+    /**
+     * Проставляет подзадачам пачки новые id их эпиков; вызывается после перенумерации.
+     */
+    void relink() {
+        for (Map.Entry<Subtask, Epic> entry : epicsBySubtask.entrySet()) {
+            entry.getKey().setEpicId(entry.getValue().getId());
+        }
+    }
+}
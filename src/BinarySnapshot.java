@@ -0,0 +1,159 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Двоичный снимок хранилища фиксированного формата, читается через {@link MappedByteBuffer}.
+ * <p>
+ * Формат: заголовок (магическое число, версия, число строк, число записей), таблица строк
+ * (длина в байтах и UTF-8) и записи фиксированной длины {@value #RECORD_SIZE} байт:
+ * id, тип, статус, индексы названия и описания в таблице строк, начало в секундах от эпохи
+ * ({@link Long#MIN_VALUE}, если не задано) и наносекундах, длительность в минутах и id эпика.
+ * Время начала, как и в CSV, хранится без потери точности.
+ */
+class BinarySnapshot {
+    static final int MAGIC = 0x544D5331; // "TMS1"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 38;
+    private static final long NO_START = Long.MIN_VALUE;
+
+    private static final byte TYPE_TASK = 0;
+    private static final byte TYPE_EPIC = 1;
+    private static final byte TYPE_SUBTASK = 2;
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+
+    private BinarySnapshot() {
+    }
+
+    static boolean isBinary(File file) {
+        if (file.length() < HEADER_SIZE) {
+            return false;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Кодирует задачи в снимок. Эпики должны идти раньше своих подзадач.
+     */
+    static byte[] encode(List<? extends Collection<? extends Task>> groups) {
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        long stringBytes = 0;
+        int recordCount = 0;
+        for (Collection<? extends Task> group : groups) {
+            for (Task task : group) {
+                for (String value : new String[]{task.getName(), task.getDescription()}) {
+                    if (value != null && !stringIds.containsKey(value)) {
+                        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                        stringIds.put(value, strings.size());
+                        strings.add(bytes);
+                        stringBytes += Integer.BYTES + bytes.length;
+                    }
+                }
+                recordCount++;
+            }
+        }
+
+        int size;
+        try {
+            size = Math.toIntExact(HEADER_SIZE + stringBytes + (long) recordCount * RECORD_SIZE);
+        } catch (ArithmeticException e) {
+            throw new ManagerSaveException("Снимок не помещается в двоичный формат: больше 2 ГБ", e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(strings.size()).putInt(recordCount);
+        for (byte[] bytes : strings) {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+        for (Collection<? extends Task> group : groups) {
+            for (Task task : group) {
+                buffer.putInt(task.getId());
+                buffer.put(typeOf(task));
+                buffer.put((byte) task.getStatus().ordinal());
+                buffer.putInt(task.getName() == null ? -1 : stringIds.get(task.getName()));
+                buffer.putInt(task.getDescription() == null ? -1 : stringIds.get(task.getDescription()));
+                LocalDateTime startTime = task.getStartTime();
+                buffer.putLong(startTime == null ? NO_START : startTime.toEpochSecond(ZoneOffset.UTC));
+                buffer.putInt(startTime == null ? 0 : startTime.getNano());
+                buffer.putLong(task.getDuration() == null ? 0 : task.getDuration().toMinutes());
+                buffer.putInt(task instanceof Subtask ? ((Subtask) task).getEpicId() : 0);
+            }
+        }
+        return buffer.array();
+    }
+
+    static void read(File file, Consumer<Task> consumer) {
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC) {
+                throw new ManagerSaveException("Неизвестный формат снимка: " + file, null);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new ManagerSaveException("Неизвестная версия снимка " + version + ": " + file, null);
+            }
+            String[] strings = new String[buffer.getInt()];
+            int recordCount = buffer.getInt();
+            byte[] scratch = new byte[64];
+            for (int i = 0; i < strings.length; i++) {
+                int length = buffer.getInt();
+                if (scratch.length < length) {
+                    scratch = new byte[Math.max(length, scratch.length * 2)];
+                }
+                buffer.get(scratch, 0, length);
+                strings[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+            }
+            for (int i = 0; i < recordCount; i++) {
+                int id = buffer.getInt();
+                byte type = buffer.get();
+                TaskStatus status = STATUSES[buffer.get()];
+                int name = buffer.getInt();
+                int description = buffer.getInt();
+                LocalDateTime startTime = fromEpochSecond(buffer.getLong(), buffer.getInt());
+                Duration duration = Duration.ofMinutes(buffer.getLong());
+                int epicId = buffer.getInt();
+                String nameValue = name < 0 ? null : strings[name];
+                String descriptionValue = description < 0 ? null : strings[description];
+                consumer.accept(switch (type) {
+                    case TYPE_TASK -> new Task(nameValue, descriptionValue, id, status, duration, startTime);
+                    case TYPE_EPIC -> new Epic(nameValue, descriptionValue, id, status);
+                    case TYPE_SUBTASK -> new Subtask(nameValue, descriptionValue, id, status, epicId, duration, startTime);
+                    default -> throw new IllegalArgumentException("Неизвестный тип задачи: " + type);
+                });
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка загрузки задачи из файла", e);
+        }
+    }
+
+    private static byte typeOf(Task task) {
+        if (task instanceof Epic) {
+            return TYPE_EPIC;
+        } else if (task instanceof Subtask) {
+            return TYPE_SUBTASK;
+        }
+        return TYPE_TASK;
+    }
+
+    private static LocalDateTime fromEpochSecond(long epochSecond, int nano) {
+        return epochSecond == NO_START ? null : LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+    }
+}
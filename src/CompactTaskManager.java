@@ -0,0 +1,558 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Менеджер задач с компактным колоночным хранилищем {@link TaskColumns} для миллионов задач в небольшой куче.
+ * <p>
+ * В отличие от {@link InMemoryTaskManager}, менеджер не хранит переданные ему объекты: поля копируются в колонки,
+ * а чтение каждый раз создаёт новый объект. Изменения полученного объекта видны менеджеру только после update.
+ * Время начала и длительность хранятся с точностью до минуты. Расписание — отображение начала в минутах на id,
+ * окончание берётся из колонок.
+ * <p>
+ * В событиях создания и обновления передаётся объект, полученный менеджером. Для удаления и изменения эпика
+ * объекты создаются из колонок, только пока есть подписчики.
+ */
+public class CompactTaskManager implements TaskManager {
+    private final TaskColumns columns;
+    private final TreeMap<Long, Integer> slots;
+    private final HistoryManager historyManager;
+    private final TaskEventBus events;
+    private int idCounter;
+
+    public CompactTaskManager() {
+        columns = new TaskColumns();
+        slots = new TreeMap<>();
+        historyManager = new InMemoryHistoryManager();
+        events = new TaskEventBus();
+        idCounter = 1;
+    }
+
+    @Override
+    public TaskEventBus events() {
+        return events;
+    }
+
+    /**
+     * Первый вызов включает ведение снимка в колонках и строит его за O(n), дальше снимок берётся за O(1).
+     * Снимок хранит копии строк, поэтому занимает память как объекты задач.
+     */
+    @Override
+    public TaskSnapshot snapshot() {
+        return columns.version();
+    }
+
+    @Override
+    public List<Task> getAllTasks() {
+        return getAllTasks(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Epic> getAllEpics() {
+        return getAllEpics(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Subtask> getAllSubtasks() {
+        return getAllSubtasks(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Task> getAllTasks(int afterId, int limit) {
+        return page(TaskColumns.TASK, afterId, limit);
+    }
+
+    @Override
+    public List<Epic> getAllEpics(int afterId, int limit) {
+        return page(TaskColumns.EPIC, afterId, limit);
+    }
+
+    @Override
+    public List<Subtask> getAllSubtasks(int afterId, int limit) {
+        return page(TaskColumns.SUBTASK, afterId, limit);
+    }
+
+    /**
+     * Ленивый обход в порядке возрастания id, объекты создаются по мере обхода.
+     * Изменение менеджера во время обхода не поддерживается.
+     */
+    @Override
+    public Stream<Task> streamAllTasks() {
+        return stream(TaskColumns.TASK);
+    }
+
+    @Override
+    public Stream<Epic> streamAllEpics() {
+        return stream(TaskColumns.EPIC);
+    }
+
+    @Override
+    public Stream<Subtask> streamAllSubtasks() {
+        return stream(TaskColumns.SUBTASK);
+    }
+
+    @Override
+    public void deleteAllTask() {
+        publishDeleted(TaskColumns.TASK);
+        columns.ids(TaskColumns.TASK).forEach(this::unschedule);
+        columns.clear(TaskColumns.TASK);
+    }
+
+    @Override
+    public void deleteAllEpic() {
+        publishDeleted(TaskColumns.SUBTASK, TaskColumns.EPIC);
+        columns.ids(TaskColumns.SUBTASK).forEach(this::unschedule);
+        columns.clear(TaskColumns.SUBTASK);
+        columns.clear(TaskColumns.EPIC);
+    }
+
+    @Override
+    public void deleteAllSubtask() {
+        List<TaskEvent> batch = events.hasSubscribers() ? deletedEvents(TaskColumns.SUBTASK) : null;
+        int[] changedEpics = batch == null ? null
+                : columns.ids(TaskColumns.EPIC).filter(id -> columns.subtaskCount(id) > 0).toArray();
+        columns.ids(TaskColumns.SUBTASK).forEach(this::unschedule);
+        columns.clear(TaskColumns.SUBTASK);
+        if (batch != null) {
+            for (int epicId : changedEpics) {
+                batch.add(new TaskEvent(TaskEvent.Type.EPIC_CHANGED, columns.materialize(epicId)));
+            }
+            events.publish(batch);
+        }
+    }
+
+    @Override
+    public Task getTask(int id) {
+        return viewed(id, TaskColumns.TASK);
+    }
+
+    @Override
+    public Task getEpic(int id) {
+        return viewed(id, TaskColumns.EPIC);
+    }
+
+    @Override
+    public Task getSubtasks(int id) {
+        return viewed(id, TaskColumns.SUBTASK);
+    }
+
+    @Override
+    public void addTask(Task task) {
+        checkTimeSlot(task, 0);
+        task.setId(idCounter++);
+        insert(task);
+        events.publish(TaskEvent.Type.CREATED, task);
+    }
+
+    @Override
+    public void addEpic(Epic epic) {
+        epic.setId(idCounter++);
+        columns.put(epic);
+        events.publish(TaskEvent.Type.CREATED, epic);
+    }
+
+    @Override
+    public void addSubtask(Subtask subtask) {
+        checkTimeSlot(subtask, 0);
+        subtask.setId(idCounter++);
+        insert(subtask);
+        publishWithEpic(TaskEvent.Type.CREATED, subtask);
+    }
+
+    /**
+     * Добавляет пачку так же, как {@link InMemoryTaskManager#addAll}: пересечения проверяются до любых изменений,
+     * идентификаторы выдаются по порядку, подзадачи привязываются к эпикам из той же пачки.
+     */
+    @Override
+    public void addAll(Collection<? extends Task> items) {
+        List<Task> scheduled = new ArrayList<>();
+        for (Task task : items) {
+            if (!(task instanceof Epic)) {
+                checkTimeSlot(task, 0);
+                scheduled.add(task);
+            }
+        }
+        if (!TimeSlotIndex.areDisjoint(scheduled)) {
+            throw new IllegalArgumentException("Задача пересекается по времени выполнения с другой задачей");
+        }
+
+        BatchEpics batchEpics = BatchEpics.link(items, id -> columns.contains(id, TaskColumns.EPIC));
+        for (Task task : items) {
+            task.setId(idCounter++);
+        }
+        batchEpics.relink();
+        for (Task task : items) {
+            if (task instanceof Epic) {
+                columns.put(task);
+            }
+        }
+        for (Task task : scheduled) {
+            insert(task);
+        }
+        if (events.hasSubscribers()) {
+            List<TaskEvent> batch = new ArrayList<>(items.size());
+            Set<Integer> changedEpics = new LinkedHashSet<>();
+            for (Task task : items) {
+                batch.add(new TaskEvent(TaskEvent.Type.CREATED, task));
+                if (task instanceof Subtask && columns.contains(((Subtask) task).getEpicId(), TaskColumns.EPIC)) {
+                    changedEpics.add(((Subtask) task).getEpicId());
+                }
+            }
+            for (int epicId : changedEpics) {
+                batch.add(new TaskEvent(TaskEvent.Type.EPIC_CHANGED, columns.materialize(epicId)));
+            }
+            events.publish(batch);
+        }
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        if (columns.contains(task.getId(), TaskColumns.TASK)) {
+            checkTimeSlot(task, task.getId());
+            unschedule(task.getId());
+            insert(task);
+            events.publish(TaskEvent.Type.UPDATED, task);
+        }
+    }
+
+    /**
+     * Обновляет название, описание и статус эпика; подзадачи эпика сохраняются.
+     */
+    @Override
+    public void updateEpic(Epic epic) {
+        if (columns.contains(epic.getId(), TaskColumns.EPIC)) {
+            columns.put(epic);
+            events.publish(TaskEvent.Type.UPDATED, epic);
+        }
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        if (columns.contains(subtask.getId(), TaskColumns.SUBTASK)) {
+            checkTimeSlot(subtask, subtask.getId());
+            int previousEpicId = columns.epicId(subtask.getId());
+            unschedule(subtask.getId());
+            insert(subtask);
+            publishWithEpic(TaskEvent.Type.UPDATED, subtask);
+            if (previousEpicId != subtask.getEpicId() && columns.contains(previousEpicId, TaskColumns.EPIC)) {
+                events.publish(TaskEvent.Type.EPIC_CHANGED, columns.materialize(previousEpicId));
+            }
+        }
+    }
+
+    @Override
+    public void deleteTask(int id) {
+        if (columns.contains(id, TaskColumns.TASK)) {
+            Task task = events.hasSubscribers() ? columns.materialize(id) : null;
+            unschedule(id);
+            columns.remove(id);
+            if (task != null) {
+                events.publish(TaskEvent.Type.DELETED, task);
+            }
+        }
+    }
+
+    @Override
+    public void deleteEpic(int id) {
+        if (columns.contains(id, TaskColumns.EPIC)) {
+            List<TaskEvent> batch = null;
+            if (events.hasSubscribers()) {
+                Epic epic = (Epic) columns.materialize(id);
+                batch = new ArrayList<>(epic.getSubtasks().size() + 1);
+                for (Subtask subtask : epic.getSubtasks()) {
+                    batch.add(new TaskEvent(TaskEvent.Type.DELETED, subtask));
+                }
+                batch.add(new TaskEvent(TaskEvent.Type.DELETED, epic));
+            }
+            for (int subtaskId : columns.subtaskIds(id)) {
+                unschedule(subtaskId);
+                columns.remove(subtaskId);
+            }
+            columns.remove(id);
+            if (batch != null) {
+                events.publish(batch);
+            }
+        }
+    }
+
+    @Override
+    public void deleteSubtasks(int id) {
+        if (columns.contains(id, TaskColumns.SUBTASK)) {
+            Subtask subtask = events.hasSubscribers() ? (Subtask) columns.materialize(id) : null;
+            unschedule(id);
+            columns.remove(id);
+            if (subtask != null) {
+                publishWithEpic(TaskEvent.Type.DELETED, subtask);
+            }
+        }
+    }
+
+    @Override
+    public List<Subtask> getSubtasksOfEpic(int epicId) {
+        int[] ids = columns.subtaskIds(epicId);
+        List<Subtask> subtasks = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            subtasks.add((Subtask) columns.materialize(id));
+        }
+        return subtasks;
+    }
+
+    /**
+     * История хранит объекты в том виде, в каком они были получены при просмотре.
+     */
+    @Override
+    public List<Task> getHistory() {
+        return historyManager.getHistory();
+    }
+
+    @Override
+    public Stream<Task> streamHistory() {
+        return historyManager.stream();
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        return getPrioritizedTasks(null, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime afterStartTime, int limit) {
+        checkLimit(limit);
+        List<Task> page = new ArrayList<>();
+        for (int id : scheduleAfter(afterStartTime).values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            if (columns.contains(id, TaskColumns.TASK)) {
+                page.add(columns.materialize(id));
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public Stream<Task> streamPrioritizedTasks() {
+        return slots.values().stream()
+                .filter(id -> columns.contains(id, TaskColumns.TASK))
+                .map(columns::materialize);
+    }
+
+    @Override
+    public List<Task> getTasksBetween(LocalDateTime from, LocalDateTime to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Начало интервала позже его окончания");
+        }
+        long fromMinute = ceilMinute(from);
+        List<Task> result = new ArrayList<>();
+        Map.Entry<Long, Integer> before = slots.lowerEntry(fromMinute);
+        if (before != null && endsAfter(before.getValue(), from)) {
+            result.add(columns.materialize(before.getValue()));
+        }
+        for (int id : slots.subMap(fromMinute, true, ceilMinute(to), false).values()) {
+            result.add(columns.materialize(id));
+        }
+        return result;
+    }
+
+    @Override
+    public Task nextTaskAfter(LocalDateTime time) {
+        Map.Entry<Long, Integer> next = slots.ceilingEntry(floorMinute(time) + 1);
+        return next == null ? null : columns.materialize(next.getValue());
+    }
+
+    @Override
+    public List<Task> tasksActiveAt(LocalDateTime time) {
+        Map.Entry<Long, Integer> slot = slots.floorEntry(floorMinute(time));
+        return slot != null && endsAfter(slot.getValue(), time) ? List.of(columns.materialize(slot.getValue())) : List.of();
+    }
+
+    @Override
+    public LocalDateTime findFreeSlot(LocalDateTime notBefore, Duration duration) {
+        return TaskColumns.fromEpochMinute(findFree(slots, columns::end, ceilMinute(notBefore), duration.toMinutes()));
+    }
+
+    @Override
+    public void scheduleTask(Task task, LocalDateTime notBefore) {
+        if (task instanceof Epic) {
+            throw new IllegalArgumentException("Время эпика складывается из подзадач, его нельзя запланировать");
+        }
+        task.setStartTime(findFreeSlot(notBefore, task.getDuration()));
+        if (task instanceof Subtask) {
+            addSubtask((Subtask) task);
+        } else {
+            addTask(task);
+        }
+    }
+
+    @Override
+    public void scheduleAll(Collection<? extends Task> items, LocalDateTime notBefore) {
+        LocalDateTime[] startTimes = TimeSlotIndex.startTimes(items);
+        TreeMap<Long, Long> placed = new TreeMap<>();
+        for (Task task : items) {
+            if (task instanceof Epic) {
+                continue;
+            }
+            long duration = task.getDuration() == null ? 0 : task.getDuration().toMinutes();
+            long candidate = ceilMinute(notBefore);
+            while (true) {
+                long free = findFree(slots, columns::end, candidate, duration);
+                candidate = findFree(placed, end -> end, free, duration);
+                if (candidate == free) {
+                    break;
+                }
+            }
+            task.setStartTime(TaskColumns.fromEpochMinute(candidate));
+            placed.put(candidate, candidate + duration);
+        }
+        try {
+            addAll(items);
+        } catch (RuntimeException e) {
+            TimeSlotIndex.restoreStartTimes(items, startTimes);
+            throw e;
+        }
+    }
+
+    /**
+     * Публикует событие подзадачи вместе с изменением её эпика, если эпик сохранён.
+     */
+    private void publishWithEpic(TaskEvent.Type type, Subtask subtask) {
+        if (!events.hasSubscribers()) {
+            return;
+        }
+        TaskEvent event = new TaskEvent(type, subtask);
+        if (columns.contains(subtask.getEpicId(), TaskColumns.EPIC)) {
+            events.publish(List.of(event, new TaskEvent(TaskEvent.Type.EPIC_CHANGED, columns.materialize(subtask.getEpicId()))));
+        } else {
+            events.publish(List.of(event));
+        }
+    }
+
+    private void publishDeleted(byte... kinds) {
+        if (events.hasSubscribers()) {
+            events.publish(deletedEvents(kinds));
+        }
+    }
+
+    private List<TaskEvent> deletedEvents(byte... kinds) {
+        List<TaskEvent> batch = new ArrayList<>();
+        for (byte kind : kinds) {
+            columns.ids(kind).forEach(id -> batch.add(new TaskEvent(TaskEvent.Type.DELETED, columns.materialize(id))));
+        }
+        return batch;
+    }
+
+    private void insert(Task task) {
+        columns.put(task);
+        idCounter = Math.max(idCounter, task.getId() + 1);
+        long start = columns.start(task.getId());
+        if (start != TaskColumns.NO_START) {
+            slots.put(start, task.getId());
+        }
+    }
+
+    private void unschedule(int id) {
+        long start = columns.start(id);
+        if (start != TaskColumns.NO_START) {
+            slots.remove(start, id);
+        }
+    }
+
+    private Task viewed(int id, byte kind) {
+        if (!columns.contains(id, kind)) {
+            return null;
+        }
+        Task task = columns.materialize(id);
+        historyManager.add(task);
+        return task;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Task> List<T> page(byte kind, int afterId, int limit) {
+        checkLimit(limit);
+        List<T> page = new ArrayList<>(Math.min(limit, columns.count(kind)));
+        for (int id = columns.nextId(kind, afterId); id >= 0 && page.size() < limit; id = columns.nextId(kind, id)) {
+            page.add((T) columns.materialize(id));
+        }
+        return page;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Task> Stream<T> stream(byte kind) {
+        return columns.ids(kind).mapToObj(id -> (T) columns.materialize(id));
+    }
+
+    private NavigableMap<Long, Integer> scheduleAfter(LocalDateTime afterStartTime) {
+        return afterStartTime == null ? slots : slots.tailMap(floorMinute(afterStartTime) + 1, true);
+    }
+
+    /**
+     * Проверка пересечения, как в {@link TimeSlotIndex#isFree}: интервалы полуоткрытые, одинаковое начало — пересечение.
+     */
+    private void checkTimeSlot(Task task, int ignoredId) {
+        if (task.getStartTime() == null) {
+            return;
+        }
+        long start = TaskColumns.toEpochMinute(task.getStartTime());
+        long end = start + (task.getDuration() == null ? 0 : task.getDuration().toMinutes());
+        Map.Entry<Long, Integer> before = slots.floorEntry(start);
+        boolean free = before == null || before.getValue() == ignoredId
+                || before.getKey() != start && columns.end(before.getValue()) <= start;
+        if (free) {
+            Map.Entry<Long, Integer> after = slots.higherEntry(start);
+            if (after != null && after.getValue() == ignoredId) {
+                after = slots.higherEntry(after.getKey());
+            }
+            free = after == null || after.getKey() >= end;
+        }
+        if (!free) {
+            throw new IllegalArgumentException("Задача пересекается по времени выполнения с другой задачей");
+        }
+    }
+
+    private boolean endsAfter(int id, LocalDateTime time) {
+        return columns.end(id) > floorMinute(time);
+    }
+
+    /**
+     * Обход промежутков расписания, как в {@link TimeSlotIndex#findFree}, но в минутах от эпохи.
+     */
+    private static <V> long findFree(NavigableMap<Long, V> byStart, ToLongFunction<V> endOf, long candidate, long duration) {
+        Map.Entry<Long, V> covering = byStart.lowerEntry(candidate);
+        if (covering != null && endOf.applyAsLong(covering.getValue()) > candidate) {
+            candidate = endOf.applyAsLong(covering.getValue());
+        }
+        while (true) {
+            Map.Entry<Long, V> next = byStart.ceilingEntry(candidate);
+            if (next == null || next.getKey() > candidate && next.getKey() >= candidate + duration) {
+                return candidate;
+            }
+            long end = endOf.applyAsLong(next.getValue());
+            // Слот нулевой длины занимает только свою минуту начала
+            candidate = end > candidate ? end : candidate + 1;
+        }
+    }
+
+    private static long floorMinute(LocalDateTime time) {
+        return TaskColumns.toEpochMinute(time);
+    }
+
+    private static long ceilMinute(LocalDateTime time) {
+        long floor = floorMinute(time);
+        return time.getSecond() == 0 && time.getNano() == 0 ? floor : floor + 1;
+    }
+
+    private static void checkLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Размер страницы не может быть отрицательным");
+        }
+    }
+}
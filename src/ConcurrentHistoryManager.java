@@ -0,0 +1,93 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Потокобезопасная история просмотров ограниченного размера с вытеснением самых давних просмотров (LRU).
+ * <p>
+ * Узлы хранятся в хеш-таблице по id задачи, рассчитанной на {@code capacity} записей, и в двусвязном списке
+ * от самого давнего просмотра к последнему. Память ограничена размером истории, а не величиной id;
+ * повторный просмотр (перенос в конец), удаление по id и вытеснение выполняются за O(1).
+ * Критическая секция — несколько присваиваний ссылок под одним монитором. Объект задачи не изменяется.
+ */
+public class ConcurrentHistoryManager implements HistoryManager {
+    private static final int MAX_INITIAL_TABLE = 1 << 16;
+
+    private final int capacity;
+    private final Map<Integer, Node> nodes;
+    private Node head;
+    private Node tail;
+
+    public ConcurrentHistoryManager(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Размер истории должен быть положительным");
+        }
+        this.capacity = capacity;
+        this.nodes = new HashMap<>((int) Math.min(capacity / 0.75 + 1, MAX_INITIAL_TABLE));
+    }
+
+    @Override
+    public synchronized void add(Task task) {
+        Node node = nodes.get(task.getId());
+        if (node != null) {
+            node.task = task;
+            unlink(node);
+        } else {
+            node = new Node(task.getId(), task);
+            nodes.put(node.id, node);
+            if (nodes.size() > capacity) {
+                nodes.remove(head.id);
+                unlink(head);
+            }
+        }
+        linkLast(node);
+    }
+
+    @Override
+    public synchronized void remove(int id) {
+        Node node = nodes.remove(id);
+        if (node != null) {
+            unlink(node);
+        }
+    }
+
+    @Override
+    public synchronized List<Task> getHistory() {
+        List<Task> history = new ArrayList<>(nodes.size());
+        for (Node current = head; current != null; current = current.next) {
+            history.add(current.task);
+        }
+        return history;
+    }
+
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    private void linkLast(Node node) {
+        node.prev = tail;
+        node.next = null;
+        if (tail == null) {
+            head = node;
+        } else {
+            tail.next = node;
+        }
+        tail = node;
+    }
+
+    private void unlink(Node node) {
+        if (node.prev == null) {
+            head = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null) {
+            tail = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+    }
+}
@@ -0,0 +1,732 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
+
+/**
+ * Потокобезопасный менеджер задач.
+ * <p>
+ * Хранилища — {@link ConcurrentSkipListMap}, поэтому чтение по id, постраничная выборка и выборка всех задач
+ * идут без блокировок,
+ * а идентификаторы выдаёт {@link AtomicInteger}. Запись разделена: изменения расписания (индекс слотов
+ * и список по приоритету) сериализуются одним {@link StampedLock}, а агрегаты эпика меняются под монитором
+ * самого эпика, так что изменения разных эпиков не мешают друг другу. Порядок захвата всегда
+ * «эпик, затем расписание». {@link #getPrioritizedTasks()} читает оптимистично и повторяет чтение
+ * под блокировкой, только если во время копирования расписание изменилось.
+ */
+public class ConcurrentTaskManager implements TaskManager {
+    private static final int DEFAULT_HISTORY_CAPACITY = 1000;
+    private static final int MAX_SCHEDULE_ATTEMPTS = 16;
+
+    private final ConcurrentNavigableMap<Integer, Task> tasks;
+    private final ConcurrentNavigableMap<Integer, Epic> epics;
+    private final ConcurrentNavigableMap<Integer, Subtask> subtasks;
+    private final ConcurrentSkipListMap<LocalDateTime, Task> prioritizedTasks;
+    private final TimeSlotIndex timeSlots;
+    private final StampedLock scheduleLock;
+    private final AtomicInteger idCounter;
+    private final HistoryManager historyManager;
+    private final TaskEventBus events;
+    private final Object versionLock;
+    private volatile boolean versioned;
+    private volatile TaskSnapshot version;
+
+    public ConcurrentTaskManager() {
+        this(new ConcurrentHistoryManager(DEFAULT_HISTORY_CAPACITY));
+    }
+
+    /**
+     * {@code historyManager} должен быть потокобезопасным, например {@link ConcurrentHistoryManager}.
+     */
+    public ConcurrentTaskManager(HistoryManager historyManager) {
+        tasks = new ConcurrentSkipListMap<>();
+        epics = new ConcurrentSkipListMap<>();
+        subtasks = new ConcurrentSkipListMap<>();
+        prioritizedTasks = new ConcurrentSkipListMap<>();
+        timeSlots = new TimeSlotIndex();
+        scheduleLock = new StampedLock();
+        idCounter = new AtomicInteger(1);
+        this.historyManager = historyManager;
+        this.events = new TaskEventBus();
+        versionLock = new Object();
+    }
+
+    /**
+     * Первый вызов включает ведение версий и строит её по хранилищам за O(n), дальше снимок берётся за O(1).
+     * Каждая операция после изменения хранилищ переносит в версию актуальные значения затронутых id
+     * под отдельной короткой блокировкой, поэтому снимок видит операцию целиком или не видит её вовсе.
+     */
+    @Override
+    public TaskSnapshot snapshot() {
+        TaskSnapshot current = version;
+        if (current != null) {
+            return current;
+        }
+        synchronized (versionLock) {
+            if (version == null) {
+                // Флаг ставится до обхода: запись, не увидевшая его, уже видна обходу, а увидевшая ждёт блокировку.
+                versioned = true;
+                TaskSnapshot built = TaskSnapshot.empty();
+                for (Epic epic : epics.values()) {
+                    built = built.with(epic);
+                }
+                for (Task task : tasks.values()) {
+                    built = built.with(task);
+                }
+                for (Subtask subtask : subtasks.values()) {
+                    built = built.with(subtask);
+                }
+                version = built;
+            }
+            return version;
+        }
+    }
+
+    /**
+     * События публикуются под теми же блокировками, что и изменения, поэтому изменения одной задачи или одного эпика
+     * приходят подписчику в порядке их выполнения.
+     */
+    @Override
+    public TaskEventBus events() {
+        return events;
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        long stamp = scheduleLock.tryOptimisticRead();
+        List<Task> result = new ArrayList<>(prioritizedTasks.values());
+        if (scheduleLock.validate(stamp)) {
+            return result;
+        }
+        stamp = scheduleLock.readLock();
+        try {
+            return new ArrayList<>(prioritizedTasks.values());
+        } finally {
+            scheduleLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime afterStartTime, int limit) {
+        Map<LocalDateTime, Task> tail = afterStartTime == null ? prioritizedTasks : prioritizedTasks.tailMap(afterStartTime, false);
+        long stamp = scheduleLock.tryOptimisticRead();
+        List<Task> page = page(tail, limit);
+        if (scheduleLock.validate(stamp)) {
+            return page;
+        }
+        stamp = scheduleLock.readLock();
+        try {
+            return page(tail, limit);
+        } finally {
+            scheduleLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Слабо согласованный обход: видит каждую задачу не более одного раза, но может не увидеть
+     * изменения, сделанные во время обхода.
+     */
+    @Override
+    public Stream<Task> streamPrioritizedTasks() {
+        return prioritizedTasks.values().stream();
+    }
+
+    @Override
+    public List<Task> getTasksBetween(LocalDateTime from, LocalDateTime to) {
+        long stamp = scheduleLock.readLock();
+        try {
+            return timeSlots.between(from, to);
+        } finally {
+            scheduleLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Task nextTaskAfter(LocalDateTime time) {
+        long stamp = scheduleLock.readLock();
+        try {
+            return timeSlots.nextAfter(time);
+        } finally {
+            scheduleLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Task> tasksActiveAt(LocalDateTime time) {
+        long stamp = scheduleLock.readLock();
+        try {
+            Task task = timeSlots.activeAt(time);
+            return task == null ? List.of() : List.of(task);
+        } finally {
+            scheduleLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Task> getAllTasks() {
+        return new ArrayList<>(tasks.values());
+    }
+
+    @Override
+    public List<Epic> getAllEpics() {
+        return new ArrayList<>(epics.values());
+    }
+
+    @Override
+    public List<Subtask> getAllSubtasks() {
+        return new ArrayList<>(subtasks.values());
+    }
+
+    @Override
+    public List<Task> getAllTasks(int afterId, int limit) {
+        return page(tasks.tailMap(afterId, false), limit);
+    }
+
+    @Override
+    public List<Epic> getAllEpics(int afterId, int limit) {
+        return page(epics.tailMap(afterId, false), limit);
+    }
+
+    @Override
+    public List<Subtask> getAllSubtasks(int afterId, int limit) {
+        return page(subtasks.tailMap(afterId, false), limit);
+    }
+
+    @Override
+    public Stream<Task> streamAllTasks() {
+        return tasks.values().stream();
+    }
+
+    @Override
+    public Stream<Epic> streamAllEpics() {
+        return epics.values().stream();
+    }
+
+    @Override
+    public Stream<Subtask> streamAllSubtasks() {
+        return subtasks.values().stream();
+    }
+
+    @Override
+    public List<Subtask> getSubtasksOfEpic(int epicId) {
+        Epic epic = epics.get(epicId);
+        if (epic == null) {
+            return List.of();
+        }
+        synchronized (epic) {
+            return List.copyOf(epic.getSubtasks());
+        }
+    }
+
+    @Override
+    public Task getTask(int id) {
+        return viewed(tasks.get(id));
+    }
+
+    @Override
+    public Task getEpic(int id) {
+        return viewed(epics.get(id));
+    }
+
+    @Override
+    public Task getSubtasks(int id) {
+        return viewed(subtasks.get(id));
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return historyManager.getHistory();
+    }
+
+    @Override
+    public Stream<Task> streamHistory() {
+        return historyManager.stream();
+    }
+
+    @Override
+    public void addTask(Task task) {
+        insertTask(task, null);
+    }
+
+    @Override
+    public void addEpic(Epic epic) {
+        epic.setId(idCounter.getAndIncrement());
+        epics.put(epic.getId(), epic);
+        events.publish(TaskEvent.Type.CREATED, epic);
+        refreshVersion(epic.getId());
+    }
+
+    @Override
+    public void addSubtask(Subtask subtask) {
+        insertSubtask(subtask, null);
+    }
+
+    @Override
+    public LocalDateTime findFreeSlot(LocalDateTime notBefore, Duration duration) {
+        long stamp = scheduleLock.readLock();
+        try {
+            return timeSlots.findFree(notBefore, duration);
+        } finally {
+            scheduleLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Поиск промежутка и добавление выполняются под одной блокировкой записи, поэтому место не займут между ними.
+     */
+    @Override
+    public void scheduleTask(Task task, LocalDateTime notBefore) {
+        if (task instanceof Epic) {
+            throw new IllegalArgumentException("Время эпика складывается из подзадач, его нельзя запланировать");
+        }
+        if (task instanceof Subtask) {
+            insertSubtask((Subtask) task, notBefore);
+        } else {
+            insertTask(task, notBefore);
+        }
+    }
+
+    /**
+     * Размещение считается оптимистично под блокировкой чтения, затем пачка добавляется через {@link #addAll}.
+     * Попытка повторяется, только если размещение устарело: расписание успело измениться и задачи пачки
+     * пересекаются с ним. Остальные отказы {@link #addAll} выбрасываются сразу, а задачам возвращается прежнее время начала.
+     */
+    @Override
+    public void scheduleAll(Collection<? extends Task> items, LocalDateTime notBefore) {
+        LocalDateTime[] startTimes = TimeSlotIndex.startTimes(items);
+        for (int attempt = 0; ; attempt++) {
+            long stamp = scheduleLock.readLock();
+            try {
+                timeSlots.placeAll(items, notBefore);
+            } finally {
+                scheduleLock.unlockRead(stamp);
+            }
+            try {
+                addAll(items);
+                return;
+            } catch (RuntimeException e) {
+                boolean stale;
+                stamp = scheduleLock.readLock();
+                try {
+                    stale = !timeSlots.areFree(items);
+                } finally {
+                    scheduleLock.unlockRead(stamp);
+                }
+                if (!stale || attempt == MAX_SCHEDULE_ATTEMPTS) {
+                    TimeSlotIndex.restoreStartTimes(items, startTimes);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void insertTask(Task task, LocalDateTime notBefore) {
+        long stamp = scheduleLock.writeLock();
+        try {
+            if (notBefore != null) {
+                task.setStartTime(timeSlots.findFree(notBefore, task.getDuration()));
+            }
+            checkTimeSlot(task, 0);
+            task.setId(idCounter.getAndIncrement());
+            tasks.put(task.getId(), task);
+            schedule(task);
+            events.publish(TaskEvent.Type.CREATED, task);
+            refreshVersion(task.getId());
+        } finally {
+            scheduleLock.unlockWrite(stamp);
+        }
+    }
+
+    private void insertSubtask(Subtask subtask, LocalDateTime notBefore) {
+        Epic epic = epics.get(subtask.getEpicId());
+        if (epic == null) {
+            scheduleSubtask(subtask, notBefore);
+            publishWithEpic(TaskEvent.Type.CREATED, subtask, null);
+            refreshVersion(subtask.getId());
+            return;
+        }
+        synchronized (epic) {
+            scheduleSubtask(subtask, notBefore);
+            if (epics.get(epic.getId()) == epic) {
+                epic.addSubtask(subtask);
+                publishWithEpic(TaskEvent.Type.CREATED, subtask, epic);
+            } else {
+                publishWithEpic(TaskEvent.Type.CREATED, subtask, null);
+            }
+            refreshVersion(subtask.getId());
+        }
+    }
+
+    /**
+     * Добавляет пачку сущностей. Все пересечения проверяются и все задачи и подзадачи попадают в расписание
+     * под одной блокировкой; затем подзадачи привязываются к эпикам, каждый эпик пересчитывается один раз.
+     */
+    @Override
+    public void addAll(Collection<? extends Task> items) {
+        List<Task> scheduled = new ArrayList<>();
+        long stamp = scheduleLock.writeLock();
+        try {
+            for (Task task : items) {
+                if (!(task instanceof Epic)) {
+                    checkTimeSlot(task, 0);
+                    scheduled.add(task);
+                }
+            }
+            if (!TimeSlotIndex.areDisjoint(scheduled)) {
+                throw new IllegalArgumentException("Задача пересекается по времени выполнения с другой задачей");
+            }
+            BatchEpics batchEpics = BatchEpics.link(items, epics::containsKey);
+            for (Task task : items) {
+                task.setId(idCounter.getAndIncrement());
+            }
+            batchEpics.relink();
+            for (Task task : scheduled) {
+                if (task instanceof Subtask) {
+                    Subtask subtask = (Subtask) task;
+                    subtasks.put(subtask.getId(), subtask);
+                    timeSlots.add(subtask);
+                } else {
+                    tasks.put(task.getId(), task);
+                    schedule(task);
+                }
+            }
+        } finally {
+            scheduleLock.unlockWrite(stamp);
+        }
+
+        List<TaskEvent> created = events.hasSubscribers() ? new ArrayList<>(items.size()) : null;
+        Map<Integer, List<Subtask>> subtasksByEpic = new LinkedHashMap<>();
+        for (Task task : items) {
+            if (task instanceof Epic) {
+                epics.put(task.getId(), (Epic) task);
+            } else if (task instanceof Subtask) {
+                Subtask subtask = (Subtask) task;
+                subtasksByEpic.computeIfAbsent(subtask.getEpicId(), epicId -> new ArrayList<>()).add(subtask);
+            }
+        }
+        for (Map.Entry<Integer, List<Subtask>> entry : subtasksByEpic.entrySet()) {
+            Epic epic = epics.get(entry.getKey());
+            if (epic != null) {
+                synchronized (epic) {
+                    if (epics.get(epic.getId()) == epic) {
+                        epic.addSubtasks(entry.getValue());
+                        if (created != null) {
+                            created.add(new TaskEvent(TaskEvent.Type.EPIC_CHANGED, epic));
+                        }
+                    } else {
+                        removeSubtasks(entry.getValue());
+                    }
+                }
+            }
+        }
+        refreshVersion(items);
+        if (created != null) {
+            List<TaskEvent> batch = new ArrayList<>(items.size() + created.size());
+            for (Task task : items) {
+                batch.add(new TaskEvent(TaskEvent.Type.CREATED, task));
+            }
+            batch.addAll(created);
+            events.publish(batch);
+        }
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        long stamp = scheduleLock.writeLock();
+        try {
+            Task previous = tasks.get(task.getId());
+            if (previous != null) {
+                checkTimeSlot(task, task.getId());
+                unschedule(task.getId());
+                tasks.put(task.getId(), task);
+                schedule(task);
+                events.publish(TaskEvent.Type.UPDATED, task);
+                refreshVersion(task.getId());
+            }
+        } finally {
+            scheduleLock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        Epic previous = epics.get(epic.getId());
+        if (previous == null) {
+            return;
+        }
+        synchronized (previous) {
+            synchronized (epic) {
+                if (epics.replace(epic.getId(), previous, epic)) {
+                    epic.adoptSubtasks(previous);
+                    epic.updateEpicDetails();
+                    events.publish(TaskEvent.Type.UPDATED, epic);
+                    refreshVersion(epic.getId());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        Epic epic = epics.get(subtask.getEpicId());
+        if (epic == null) {
+            if (replaceSubtask(subtask)) {
+                publishWithEpic(TaskEvent.Type.UPDATED, subtask, null);
+                refreshVersion(subtask.getId());
+            }
+            return;
+        }
+        synchronized (epic) {
+            if (replaceSubtask(subtask)) {
+                epic.updateSubtask(subtask);
+                publishWithEpic(TaskEvent.Type.UPDATED, subtask, epic);
+                refreshVersion(subtask.getId());
+            }
+        }
+    }
+
+    @Override
+    public void deleteTask(int id) {
+        long stamp = scheduleLock.writeLock();
+        try {
+            Task task = tasks.remove(id);
+            if (task != null) {
+                unschedule(id);
+                events.publish(TaskEvent.Type.DELETED, task);
+                refreshVersion(id);
+            }
+        } finally {
+            scheduleLock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void deleteEpic(int id) {
+        Epic epic = epics.remove(id);
+        if (epic == null) {
+            return;
+        }
+        synchronized (epic) {
+            List<Subtask> removed = removeSubtasks(new ArrayList<>(epic.getSubtasks()));
+            epic.clearSubtasks();
+            publishDeleted(removed, null);
+            events.publish(TaskEvent.Type.DELETED, epic);
+            refreshVersion(id, removed);
+        }
+    }
+
+    @Override
+    public void deleteSubtasks(int id) {
+        Subtask subtask = subtasks.get(id);
+        if (subtask == null) {
+            return;
+        }
+        Epic epic = epics.get(subtask.getEpicId());
+        if (epic == null) {
+            List<Subtask> removed = removeSubtasks(List.of(subtask));
+            publishDeleted(removed, null);
+            refreshVersion(removed);
+            return;
+        }
+        synchronized (epic) {
+            List<Subtask> removed = removeSubtasks(List.of(subtask));
+            epic.removeSubtask(subtask);
+            publishDeleted(removed, epic);
+            refreshVersion(removed);
+        }
+    }
+
+    @Override
+    public void deleteAllTask() {
+        for (Integer id : tasks.keySet()) {
+            deleteTask(id);
+        }
+    }
+
+    @Override
+    public void deleteAllEpic() {
+        for (Integer id : epics.keySet()) {
+            deleteEpic(id);
+        }
+        List<Subtask> removed = removeSubtasks(new ArrayList<>(subtasks.values()));
+        publishDeleted(removed, null);
+        refreshVersion(removed);
+    }
+
+    @Override
+    public void deleteAllSubtask() {
+        for (Epic epic : epics.values()) {
+            synchronized (epic) {
+                List<Subtask> removed = removeSubtasks(new ArrayList<>(epic.getSubtasks()));
+                epic.clearSubtasks();
+                publishDeleted(removed, epic);
+                refreshVersion(removed);
+            }
+        }
+        List<Subtask> removed = removeSubtasks(new ArrayList<>(subtasks.values()));
+        publishDeleted(removed, null);
+        refreshVersion(removed);
+    }
+
+    private static <T> List<T> page(Map<?, T> store, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Размер страницы не может быть отрицательным");
+        }
+        List<T> page = new ArrayList<>(Math.min(limit, 64));
+        for (T value : store.values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(value);
+        }
+        return page;
+    }
+
+    private Task viewed(Task task) {
+        if (task != null) {
+            historyManager.add(task);
+        }
+        return task;
+    }
+
+    private void scheduleSubtask(Subtask subtask, LocalDateTime notBefore) {
+        long stamp = scheduleLock.writeLock();
+        try {
+            if (notBefore != null) {
+                subtask.setStartTime(timeSlots.findFree(notBefore, subtask.getDuration()));
+            }
+            checkTimeSlot(subtask, 0);
+            subtask.setId(idCounter.getAndIncrement());
+            subtasks.put(subtask.getId(), subtask);
+            timeSlots.add(subtask);
+        } finally {
+            scheduleLock.unlockWrite(stamp);
+        }
+    }
+
+    private boolean replaceSubtask(Subtask subtask) {
+        long stamp = scheduleLock.writeLock();
+        try {
+            if (!subtasks.containsKey(subtask.getId())) {
+                return false;
+            }
+            checkTimeSlot(subtask, subtask.getId());
+            subtasks.put(subtask.getId(), subtask);
+            timeSlots.add(subtask);
+            return true;
+        } finally {
+            scheduleLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Удаляет подзадачи из хранилища и расписания и возвращает те, что действительно были удалены этим вызовом.
+     */
+    private List<Subtask> removeSubtasks(Collection<Subtask> candidates) {
+        List<Subtask> removed = new ArrayList<>(candidates.size());
+        long stamp = scheduleLock.writeLock();
+        try {
+            for (Subtask subtask : candidates) {
+                if (subtasks.remove(subtask.getId(), subtask)) {
+                    timeSlots.remove(subtask.getId());
+                    removed.add(subtask);
+                }
+            }
+        } finally {
+            scheduleLock.unlockWrite(stamp);
+        }
+        return removed;
+    }
+
+    private void publishWithEpic(TaskEvent.Type type, Subtask subtask, Epic epic) {
+        if (!events.hasSubscribers()) {
+            return;
+        }
+        TaskEvent event = new TaskEvent(type, subtask);
+        events.publish(epic == null ? List.of(event) : List.of(event, new TaskEvent(TaskEvent.Type.EPIC_CHANGED, epic)));
+    }
+
+    private void publishDeleted(List<Subtask> removed, Epic epic) {
+        if (removed.isEmpty() || !events.hasSubscribers()) {
+            return;
+        }
+        List<TaskEvent> batch = new ArrayList<>(removed.size() + 1);
+        for (Subtask subtask : removed) {
+            batch.add(new TaskEvent(TaskEvent.Type.DELETED, subtask));
+        }
+        if (epic != null) {
+            batch.add(new TaskEvent(TaskEvent.Type.EPIC_CHANGED, epic));
+        }
+        events.publish(batch);
+    }
+
+    private void refreshVersion(int id) {
+        if (versioned) {
+            synchronized (versionLock) {
+                version = refreshed(version, id);
+            }
+        }
+    }
+
+    private void refreshVersion(Collection<? extends Task> changed) {
+        refreshVersion(-1, changed);
+    }
+
+    /**
+     * Переносит в версию текущие значения {@code id} (если он неотрицателен) и всех {@code changed} за один шаг.
+     * Значения читаются из хранилищ под блокировкой версии, поэтому при гонке последней записывается актуальное.
+     */
+    private void refreshVersion(int id, Collection<? extends Task> changed) {
+        if (!versioned) {
+            return;
+        }
+        synchronized (versionLock) {
+            TaskSnapshot next = version;
+            if (id >= 0) {
+                next = refreshed(next, id);
+            }
+            for (Task task : changed) {
+                next = refreshed(next, task.getId());
+            }
+            version = next;
+        }
+    }
+
+    private TaskSnapshot refreshed(TaskSnapshot snapshot, int id) {
+        Task live = tasks.get(id);
+        if (live == null) {
+            live = epics.get(id);
+        }
+        if (live == null) {
+            live = subtasks.get(id);
+        }
+        return live == null ? snapshot.without(id) : snapshot.with(live);
+    }
+
+    // Вызывается под блокировкой записи расписания
+    private void schedule(Task task) {
+        timeSlots.add(task);
+        if (task.getStartTime() != null) {
+            prioritizedTasks.put(task.getStartTime(), task);
+        }
+    }
+
+    // Вызывается под блокировкой записи расписания
+    private void unschedule(int id) {
+        TimeSlotIndex.Slot slot = timeSlots.get(id);
+        if (slot != null) {
+            prioritizedTasks.remove(slot.start);
+        }
+        timeSlots.remove(id);
+    }
+
+    private void checkTimeSlot(Task task, int ignoredId) {
+        if (!timeSlots.isFree(task, ignoredId)) {
+            throw new IllegalArgumentException("Задача пересекается по времени выполнения с другой задачей");
+        }
+    }
+}
@@ -0,0 +1,114 @@
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Обработчик коллекции одного типа задач: {@code GET /{name}[?after=&limit=]}, {@code GET /{name}/{id}},
+ * {@code POST /{name}} и {@code DELETE /{name}[/{id}]}.
+ * <p>
+ * POST без id (или с нулевым id) создаёт задачу, с id — обновляет существующую. Проверка существования
+ * идёт через постраничную выборку, чтобы не засорять историю просмотров.
+ */
+abstract class EntityHttpHandler<T extends Task> extends BaseHttpHandler {
+    private static final int DEFAULT_LIMIT = Integer.MAX_VALUE;
+
+    private final String name;
+
+    protected EntityHttpHandler(TaskManager manager, String name) {
+        super(manager);
+        this.name = name;
+    }
+
+    protected abstract List<T> page(int afterId, int limit);
+
+    protected abstract List<T> all();
+
+    protected abstract Task get(int id);
+
+    protected abstract T parse(String body);
+
+    protected abstract void add(T task);
+
+    protected abstract void update(T task);
+
+    protected abstract void delete(int id);
+
+    protected abstract void deleteAll();
+
+    @Override
+    protected void handleRequest(HttpExchange exchange, String[] path) throws IOException {
+        if (path.length == 0 || !path[0].equals(name) || path.length > 2) {
+            sendNotFound(exchange);
+            return;
+        }
+        switch (exchange.getRequestMethod()) {
+            case "GET" -> handleGet(exchange, path);
+            case "POST" -> handlePost(exchange, path);
+            case "DELETE" -> handleDelete(exchange, path);
+            default -> sendMethodNotAllowed(exchange);
+        }
+    }
+
+    protected void handleGet(HttpExchange exchange, String[] path) throws IOException {
+        if (path.length == 1) {
+            Map<String, String> parameters = query(exchange);
+            if (parameters.containsKey("after") || parameters.containsKey("limit")) {
+                sendText(exchange, 200, TaskJson.toJson(page(intParameter(parameters, "after", 0),
+                        intParameter(parameters, "limit", DEFAULT_LIMIT))));
+            } else {
+                sendText(exchange, 200, TaskJson.toJson(all()));
+            }
+            return;
+        }
+        int id = id(path[1]);
+        if (!exists(id)) {
+            sendNotFound(exchange);
+            return;
+        }
+        Task task = get(id);
+        if (task == null) {
+            sendNotFound(exchange);
+        } else {
+            sendText(exchange, 200, TaskJson.toJson(task));
+        }
+    }
+
+    private void handlePost(HttpExchange exchange, String[] path) throws IOException {
+        if (path.length != 1) {
+            sendMethodNotAllowed(exchange);
+            return;
+        }
+        T task = parse(readBody(exchange));
+        if (task.getId() == 0) {
+            add(task);
+        } else if (exists(task.getId())) {
+            update(task);
+        } else {
+            sendNotFound(exchange);
+            return;
+        }
+        sendText(exchange, 201, TaskJson.toJson(task));
+    }
+
+    private void handleDelete(HttpExchange exchange, String[] path) throws IOException {
+        if (path.length == 1) {
+            deleteAll();
+            sendText(exchange, 200, "");
+            return;
+        }
+        int id = id(path[1]);
+        if (!exists(id)) {
+            sendNotFound(exchange);
+            return;
+        }
+        delete(id);
+        sendText(exchange, 200, "");
+    }
+
+    protected boolean exists(int id) {
+        List<T> found = page(id - 1, 1);
+        return !found.isEmpty() && found.get(0).getId() == id;
+    }
+}
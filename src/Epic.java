@@ -1,59 +1,241 @@
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
+/**
+ * Эпик хранит агрегаты своих подзадач и обновляет их при каждом изменении за O(log k):
+ * сумму длительностей, число подзадач в каждом статусе и мультимножества времени начала и окончания.
+ * Для каждой подзадачи запоминается её вклад, поэтому подзадачу можно изменить на месте до вызова
+ * {@link #updateSubtask(Subtask)} — старые значения всё равно будут корректно вычтены.
+ * <p>
+ * Сами поля статуса, длительности и времени эпика только помечаются устаревшими и переносятся из агрегатов
+ * при первом чтении через геттеры, поэтому пачка изменений одного эпика обновляет их один раз.
+ */
 public class Epic extends Task {
     private final List<Subtask> subtasks;
+    private final Map<Integer, Contribution> contributions;
+    private final int[] statusCounts;
+    private final TreeMap<LocalDateTime, Integer> startTimes;
+    private final TreeMap<LocalDateTime, Integer> endTimes;
+    private Duration totalDuration;
+    private volatile boolean dirty;
     private LocalDateTime endTime;
 
     public Epic(String name, String description, int id, TaskStatus status) {
         super(name, description, id, status, Duration.ZERO, null);
         this.subtasks = new ArrayList<>();
+        this.contributions = new HashMap<>();
+        this.statusCounts = new int[TaskStatus.values().length];
+        this.startTimes = new TreeMap<>();
+        this.endTimes = new TreeMap<>();
+        this.totalDuration = Duration.ZERO;
     }
 
+    /**
+     * Подзадачи эпика в порядке возрастания идентификаторов, только для чтения.
+     */
     public List<Subtask> getSubtasks() {
-        return subtasks;
+        return Collections.unmodifiableList(subtasks);
     }
 
     public void addSubtask(Subtask subtask) {
-        subtasks.add(subtask);
-        updateEpicDetails();
+        attach(subtask);
+        dirty = true;
+    }
+
+    public void addSubtasks(Collection<Subtask> subtasks) {
+        for (Subtask subtask : subtasks) {
+            attach(subtask);
+        }
+        dirty = true;
+    }
+
+    public void updateSubtask(Subtask subtask) {
+        int index = indexOf(subtask.getId());
+        if (index < 0) {
+            return;
+        }
+        subtasks.set(index, subtask);
+        withdraw(contributions.remove(subtask.getId()));
+        contribute(subtask);
+        dirty = true;
+    }
+
+    public void removeSubtask(Subtask subtask) {
+        int index = indexOf(subtask.getId());
+        if (index < 0) {
+            return;
+        }
+        subtasks.remove(index);
+        withdraw(contributions.remove(subtask.getId()));
+        dirty = true;
+    }
+
+    public void clearSubtasks() {
+        subtasks.clear();
+        contributions.clear();
+        Arrays.fill(statusCounts, 0);
+        startTimes.clear();
+        endTimes.clear();
+        totalDuration = Duration.ZERO;
+        dirty = true;
+    }
+
+    /**
+     * Переносит подзадачи из другого экземпляра того же эпика, например при замене эпика через updateEpic.
+     */
+    public void adoptSubtasks(Epic other) {
+        if (other == this || !subtasks.isEmpty()) {
+            return;
+        }
+        addSubtasks(other.subtasks);
     }
 
     public Duration calculateEpicDuration() {
-        return subtasks.stream()
-                .map(Subtask::getDuration)
-                .reduce(Duration.ZERO, Duration::plus);
+        return totalDuration;
     }
 
     public LocalDateTime calculateEpicStartTime() {
-        return subtasks.stream()
-                .map(Subtask::getStartTime)
-                .min(LocalDateTime::compareTo)
-                .orElse(null);
+        return startTimes.isEmpty() ? null : startTimes.firstKey();
     }
 
     public LocalDateTime calculateEpicEndTime() {
-        return subtasks.stream()
-                .map(Subtask::getEndTime)
-                .max(LocalDateTime::compareTo)
-                .orElse(null);
+        return endTimes.isEmpty() ? null : endTimes.lastKey();
     }
 
+    public TaskStatus calculateEpicStatus() {
+        int total = subtasks.size();
+        if (total == 0 || statusCounts[TaskStatus.NEW.ordinal()] == total) {
+            return TaskStatus.NEW;
+        } else if (statusCounts[TaskStatus.DONE.ordinal()] == total) {
+            return TaskStatus.DONE;
+        }
+        return TaskStatus.IN_PROGRESS;
+    }
+
+    /**
+     * Помечает статус, длительность и время эпика устаревшими; они будут пересчитаны при следующем чтении.
+     */
     public void updateEpicDetails() {
-        setDuration(calculateEpicDuration());
-        setStartTime(calculateEpicStartTime());
-        setEndTime(calculateEpicEndTime());
+        dirty = true;
+    }
+
+    @Override
+    public TaskStatus getStatus() {
+        refresh();
+        return super.getStatus();
+    }
+
+    @Override
+    public Duration getDuration() {
+        refresh();
+        return super.getDuration();
+    }
+
+    @Override
+    public LocalDateTime getStartTime() {
+        refresh();
+        return super.getStartTime();
     }
 
     @Override
     public LocalDateTime getEndTime() {
+        refresh();
         return endTime;
     }
 
+    @Override
+    public void setEndTime(LocalDateTime endTime) {
+        this.endTime = endTime;
+    }
+
+    /**
+     * Пересчёт под монитором эпика: геттеры могут вызываться из других потоков, пока подзадачи меняются
+     * под этим же монитором (см. {@link ConcurrentTaskManager}).
+     */
+    private void refresh() {
+        if (!dirty) {
+            return;
+        }
+        synchronized (this) {
+            if (dirty) {
+                dirty = false;
+                setStatus(calculateEpicStatus());
+                setDuration(calculateEpicDuration());
+                setStartTime(calculateEpicStartTime());
+                setEndTime(calculateEpicEndTime());
+            }
+        }
+    }
+
+    private void attach(Subtask subtask) {
+        int id = subtask.getId();
+        if (subtasks.isEmpty() || subtasks.get(subtasks.size() - 1).getId() < id) {
+            subtasks.add(subtask);
+        } else {
+            int index = indexOf(id);
+            if (index >= 0) {
+                return;
+            }
+            subtasks.add(-index - 1, subtask);
+        }
+        contribute(subtask);
+    }
+
+    private int indexOf(int id) {
+        int low = 0;
+        int high = subtasks.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleId = subtasks.get(middle).getId();
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void contribute(Subtask subtask) {
+        Contribution contribution = new Contribution(subtask);
+        contributions.put(subtask.getId(), contribution);
+        statusCounts[contribution.status.ordinal()]++;
+        totalDuration = totalDuration.plus(contribution.duration);
+        if (contribution.startTime != null) {
+            startTimes.merge(contribution.startTime, 1, Integer::sum);
+            endTimes.merge(contribution.endTime, 1, Integer::sum);
+        }
+    }
+
+    private void withdraw(Contribution contribution) {
+        if (contribution == null) {
+            return;
+        }
+        statusCounts[contribution.status.ordinal()]--;
+        totalDuration = totalDuration.minus(contribution.duration);
+        if (contribution.startTime != null) {
+            decrement(startTimes, contribution.startTime);
+            decrement(endTimes, contribution.endTime);
+        }
+    }
+
+    private static void decrement(TreeMap<LocalDateTime, Integer> multiset, LocalDateTime key) {
+        multiset.computeIfPresent(key, (time, count) -> count == 1 ? null : count - 1);
+    }
+
     @Override
     public String toString() {
+        refresh();
         return "Epic{" +
                 "name='" + name + '\'' +
                 ", id=" + id +
@@ -65,4 +247,18 @@ public class Epic extends Task {
                 ", subtasks=" + subtasks +
                 '}';
     }
+
+    private static class Contribution {
+        final TaskStatus status;
+        final Duration duration;
+        final LocalDateTime startTime;
+        final LocalDateTime endTime;
+
+        Contribution(Subtask subtask) {
+            this.status = subtask.getStatus();
+            this.duration = subtask.getDuration() == null ? Duration.ZERO : subtask.getDuration();
+            this.startTime = subtask.getStartTime();
+            this.endTime = startTime == null ? null : startTime.plus(duration);
+        }
+    }
 }
@@ -0,0 +1,71 @@
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Кроме общих операций отдаёт подзадачи эпика: {@code GET /epics/{id}/subtasks}.
+ */
+class EpicsHandler extends EntityHttpHandler<Epic> {
+    EpicsHandler(TaskManager manager) {
+        super(manager, "epics");
+    }
+
+    @Override
+    protected void handleRequest(HttpExchange exchange, String[] path) throws IOException {
+        if (path.length == 3 && path[0].equals("epics") && path[2].equals("subtasks")) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendMethodNotAllowed(exchange);
+                return;
+            }
+            int id = id(path[1]);
+            if (exists(id)) {
+                sendText(exchange, 200, TaskJson.toJson(manager.getSubtasksOfEpic(id)));
+            } else {
+                sendNotFound(exchange);
+            }
+            return;
+        }
+        super.handleRequest(exchange, path);
+    }
+
+    @Override
+    protected List<Epic> page(int afterId, int limit) {
+        return manager.getAllEpics(afterId, limit);
+    }
+
+    @Override
+    protected List<Epic> all() {
+        return manager.getAllEpics();
+    }
+
+    @Override
+    protected Task get(int id) {
+        return manager.getEpic(id);
+    }
+
+    @Override
+    protected Epic parse(String body) {
+        return TaskJson.parseEpic(body);
+    }
+
+    @Override
+    protected void add(Epic epic) {
+        manager.addEpic(epic);
+    }
+
+    @Override
+    protected void update(Epic epic) {
+        manager.updateEpic(epic);
+    }
+
+    @Override
+    protected void delete(int id) {
+        manager.deleteEpic(id);
+    }
+
+    @Override
+    protected void deleteAll() {
+        manager.deleteAllEpic();
+    }
+}
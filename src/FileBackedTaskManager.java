@@ -1,86 +1,317 @@
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
-import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class FileBackedTaskManager extends InMemoryTaskManager implements AutoCloseable {
+    static final int PARALLEL_LOAD_THRESHOLD = 4 * 1024 * 1024;
+    private static final int PARALLEL_LOAD_CHUNK = 1024 * 1024;
+    private static final long MAX_PARALLEL_LOAD_SIZE = Integer.MAX_VALUE - 8;
 
-public class FileBackedTaskManager extends InMemoryTaskManager {
     private final File file;
+    private final TaskJournal journal;
+    private final int compactionThreshold;
+    private final SnapshotFormat format;
+    private final Object flushLock = new Object();
+    private final List<String> pendingRecords = new ArrayList<>();
+    private final TaskCsv.Writer csvWriter = new TaskCsv.Writer();
+    private ScheduledExecutorService flusher;
+    private int maxDirtyCount;
+    private int dirtyCount;
+    private volatile ManagerSaveException flushFailure;
+    private volatile LatencyHistogram saveTimer;
+    private volatile LatencyHistogram flushTimer;
+    private volatile LongAdder persistedBytes;
+    private long loadNanos = -1;
 
     public FileBackedTaskManager(File file) {
+        this(file, 0);
+    }
+
+    /**
+     * Режим журнала: каждое изменение дописывается одной строкой в файл {@code <file>.journal},
+     * а после {@code compactionThreshold} записей журнал сворачивается в снимок {@code file}.
+     * При {@code compactionThreshold <= 0} снимок перезаписывается после каждого изменения.
+     */
+    public FileBackedTaskManager(File file, int compactionThreshold) {
+        this(file, compactionThreshold, SnapshotFormat.CSV);
+    }
+
+    /**
+     * {@code format} задаёт формат, в котором пишется снимок; при загрузке формат определяется по содержимому файла.
+     */
+    public FileBackedTaskManager(File file, int compactionThreshold, SnapshotFormat format) {
         this.file = file;
+        this.compactionThreshold = compactionThreshold;
+        this.format = format;
+        this.journal = compactionThreshold > 0 ? new TaskJournal(journalFile(file)) : null;
     }
 
-    public static void loadFromFile(File file) {
-        FileBackedTaskManager manager = new FileBackedTaskManager(file);
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line = reader.readLine(); // Пропустить заголовок
-            while ((line = reader.readLine()) != null) {
-                Task task = fromString(line);
-                if (task instanceof Epic) {
-                    manager.addEpic((Epic) task);
-                } else if (task instanceof Subtask) {
-                    manager.addSubtask((Subtask) task);
-                } else {
-                    manager.addTask(task);
+    public static FileBackedTaskManager loadFromFile(File file) {
+        return loadFromFile(file, 0);
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, int compactionThreshold) {
+        SnapshotFormat format = BinarySnapshot.isBinary(file) ? SnapshotFormat.BINARY : SnapshotFormat.CSV;
+        return loadFromFile(file, compactionThreshold, format);
+    }
+
+    /**
+     * CSV-снимок от {@value #PARALLEL_LOAD_THRESHOLD} байт разбирается параллельно в {@link ForkJoinPool#commonPool()},
+     * после чего задачи вставляются в хранилища, а подзадачи привязываются к эпикам одним проходом.
+     */
+    public static FileBackedTaskManager loadFromFile(File file, int compactionThreshold, SnapshotFormat format) {
+        long start = System.nanoTime();
+        FileBackedTaskManager manager = new FileBackedTaskManager(file, compactionThreshold, format);
+        TaskJournal journal = manager.journal != null ? manager.journal : new TaskJournal(journalFile(file));
+        if (BinarySnapshot.isBinary(file)) {
+            List<Task> restored = new ArrayList<>();
+            BinarySnapshot.read(file, restored::add);
+            manager.restoreAll(restored);
+        } else if (file.exists() || !journal.exists()) {
+            manager.restoreAll(readCsvSnapshot(file));
+        }
+        journal.replay(manager::replay);
+        if (manager.journal == null && journal.exists()) {
+            // Без режима журнала изменения из него сразу переносятся в снимок
+            manager.save();
+            journal.reset();
+        }
+        manager.loadNanos = System.nanoTime() - start;
+        return manager;
+    }
+
+    private static List<Task> readCsvSnapshot(File file) {
+        long length = file.length();
+        try {
+            if (length >= PARALLEL_LOAD_THRESHOLD && length <= MAX_PARALLEL_LOAD_SIZE
+                    && ForkJoinPool.getCommonPoolParallelism() > 1) {
+                byte[] bytes = Files.readAllBytes(file.toPath());
+                int chunkSize = (int) Math.max(PARALLEL_LOAD_CHUNK, bytes.length / (ForkJoinPool.getCommonPoolParallelism() * 4L));
+                return TaskCsv.parseSnapshot(bytes, ForkJoinPool.commonPool(), chunkSize);
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                TaskCsv.Reader reader = new TaskCsv.Reader(channel);
+                List<Task> restored = new ArrayList<>();
+                reader.next(); // Пропустить заголовок
+                while (reader.next()) {
+                    restored.add(reader.task(0));
                 }
+                return restored;
             }
         } catch (IOException e) {
             throw new ManagerSaveException("Ошибка загрузки задачи из файла", e);
         }
     }
 
+    /**
+     * Начинает писать в {@code metrics} задержки сохранения ({@code save}) и фонового сброса ({@code flush}),
+     * число записанных на диск байт ({@code persisted_bytes}) и, если менеджер загружен из файла,
+     * время загрузки ({@code loadFromFile}).
+     */
+    public synchronized void instrument(TaskMetrics metrics) {
+        saveTimer = metrics.timer("save");
+        flushTimer = metrics.timer("flush");
+        persistedBytes = metrics.counter("persisted_bytes");
+        if (loadNanos >= 0) {
+            metrics.timer("loadFromFile").record(loadNanos);
+        }
+    }
+
+    /**
+     * Включает отложенную запись: изменения копятся в памяти и сбрасываются на диск фоновым потоком
+     * одной записью с fsync — раз в {@code flushInterval} или сразу после {@code maxDirtyCount} изменений.
+     * Перед остановкой приложения нужно вызвать {@link #close()}, иначе последние изменения будут потеряны.
+     */
+    public synchronized void enableWriteBehind(Duration flushInterval, int maxDirtyCount) {
+        if (flusher != null) {
+            throw new IllegalStateException("Отложенная запись уже включена");
+        }
+        if (maxDirtyCount <= 0) {
+            throw new IllegalArgumentException("Количество изменений до сброса должно быть положительным");
+        }
+        if (flushInterval.isNegative() || flushInterval.toMillis() < 1) {
+            throw new IllegalArgumentException("Интервал сброса должен быть не меньше 1 мс");
+        }
+        long period = flushInterval.toMillis();
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-manager-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            executor.scheduleWithFixedDelay(this::flushInBackground, period, period, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            executor.shutdownNow();
+            throw e;
+        }
+        this.maxDirtyCount = maxDirtyCount;
+        flusher = executor;
+    }
+
+    /**
+     * Сбрасывает на диск все накопленные изменения. В синхронном режиме изменения уже записаны.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            ManagerSaveException failure = flushFailure;
+            flushFailure = null;
+            byte[] snapshot = null;
+            List<String> records;
+            synchronized (this) {
+                if (dirtyCount == 0) {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    return;
+                }
+                records = new ArrayList<>(pendingRecords);
+                if (journal == null || journal.size() + records.size() >= compactionThreshold) {
+                    snapshot = renderSnapshot();
+                }
+                pendingRecords.clear();
+                dirtyCount = 0;
+            }
+            long start = System.nanoTime();
+            try {
+                if (snapshot == null) {
+                    recordPersisted(journal.appendAll(records, true));
+                } else {
+                    writeDurably(snapshot);
+                    if (journal != null) {
+                        journal.reset();
+                    }
+                }
+                LatencyHistogram timer = flushTimer;
+                if (timer != null) {
+                    timer.recordSince(start);
+                }
+            } catch (ManagerSaveException e) {
+                synchronized (this) {
+                    pendingRecords.addAll(0, records);
+                    dirtyCount += records.isEmpty() ? 1 : records.size();
+                }
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            executor = flusher;
+            flusher = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    private void flushInBackground() {
+        try {
+            flush();
+        } catch (ManagerSaveException e) {
+            flushFailure = e;
+        }
+    }
+
     @Override
-    public void addTask(Task task) {
+    public synchronized void addTask(Task task) {
         super.addTask(task);
-        save();
+        save("ADD", task);
     }
 
     @Override
-    public void addEpic(Epic epic) {
+    public synchronized void addEpic(Epic epic) {
         super.addEpic(epic);
-        save();
+        save("ADD", epic);
     }
 
     @Override
-    public void addSubtask(Subtask subtask) {
+    public synchronized void addSubtask(Subtask subtask) {
         super.addSubtask(subtask);
-        save();
+        save("ADD", subtask);
     }
 
     @Override
-    public void updateTask(Task task) {
+    public synchronized void addAll(Collection<? extends Task> tasks) {
+        super.addAll(tasks);
+        List<String> records = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            records.add(TaskCsv.record("ADD", task));
+        }
+        save(records);
+    }
+
+    @Override
+    public synchronized void updateTask(Task task) {
         super.updateTask(task);
-        save();
+        save("UPDATE", task);
     }
 
     @Override
-    public void updateEpic(Epic epic) {
+    public synchronized void updateEpic(Epic epic) {
         super.updateEpic(epic);
-        save();
+        save("UPDATE", epic);
     }
 
     @Override
-    public void updateSubtask(Subtask subtask) {
+    public synchronized void updateSubtask(Subtask subtask) {
         super.updateSubtask(subtask);
-        save();
+        save("UPDATE", subtask);
     }
 
     @Override
-    public void deleteTask(int id) {
+    public synchronized void deleteTask(int id) {
         super.deleteTask(id);
-        save();
+        save("DELETE,TASK," + id);
     }
 
     @Override
-    public void deleteEpic(int id) {
+    public synchronized void deleteEpic(int id) {
         super.deleteEpic(id);
-        save();
+        save("DELETE,EPIC," + id);
     }
 
     @Override
-    public void deleteSubtasks(int id) {
+    public synchronized void deleteSubtasks(int id) {
         super.deleteSubtasks(id);
-        save();
+        save("DELETE,SUBTASK," + id);
+    }
+
+    @Override
+    public synchronized void deleteAllTask() {
+        super.deleteAllTask();
+        save("CLEAR,TASK");
+    }
+
+    @Override
+    public synchronized void deleteAllEpic() {
+        super.deleteAllEpic();
+        save("CLEAR,EPIC");
+    }
+
+    @Override
+    public synchronized void deleteAllSubtask() {
+        super.deleteAllSubtask();
+        save("CLEAR,SUBTASK");
     }
 
     @Override
@@ -88,63 +319,183 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
         return super.getHistory();
     }
 
-    private void save() {
-        try (FileWriter writer = new FileWriter(file, false)) {
-            writer.write("id,type,name,status,description,duration,startTime,epic\n");
-            for (Task task : getAllTasks()) {
-                writer.write(toString(task));
-                writer.write("\n");
+    private static File journalFile(File file) {
+        return new File(file.getPath() + ".journal");
+    }
+
+    private void save(String operation, Task task) {
+        save(TaskCsv.record(operation, task));
+    }
+
+    private void save(String record) {
+        save(List.of(record));
+    }
+
+    private void save(List<String> records) {
+        LatencyHistogram timer = saveTimer;
+        if (timer == null) {
+            persist(records);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            persist(records);
+        } finally {
+            timer.recordSince(start);
+        }
+    }
+
+    private void persist(List<String> records) {
+        if (flusher != null) {
+            if (journal != null) {
+                pendingRecords.addAll(records);
             }
-            for (Epic epic : getAllEpics()) {
-                writer.write(toString(epic));
-                writer.write("\n");
+            int previousDirtyCount = dirtyCount;
+            dirtyCount += records.size();
+            if (previousDirtyCount < maxDirtyCount && dirtyCount >= maxDirtyCount) {
+                flusher.execute(this::flushInBackground);
             }
-            for (Subtask subtask : getAllSubtasks()) {
-                writer.write(toString(subtask));
-                writer.write("\n");
+            return;
+        }
+        if (journal == null) {
+            save();
+            return;
+        }
+        recordPersisted(journal.appendAll(records, false));
+        if (journal.size() >= compactionThreshold) {
+            compact();
+        }
+    }
+
+    /**
+     * Сворачивает журнал в снимок: снимок пишется во временный файл и атомарно подменяет старый,
+     * и только после этого журнал удаляется.
+     */
+    private void compact() {
+        File temp = new File(file.getPath() + ".tmp");
+        writeSnapshot(temp);
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка сохранения задач в файл", e);
+        }
+        journal.reset();
+    }
+
+    private void save() {
+        writeSnapshot(file);
+    }
+
+    private void writeSnapshot(File target) {
+        if (format == SnapshotFormat.BINARY) {
+            byte[] snapshot = renderSnapshot();
+            try (FileOutputStream out = new FileOutputStream(target, false)) {
+                out.write(snapshot);
+            } catch (IOException e) {
+                throw new ManagerSaveException("Ошибка сохранения задач в файл", e);
             }
+            recordPersisted(snapshot.length);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            recordPersisted(writeSnapshot(channel));
         } catch (IOException e) {
             throw new ManagerSaveException("Ошибка сохранения задач в файл", e);
         }
     }
 
-    private static Task fromString(String value) {
-        String[] parts = value.split(",");
-        int id = Integer.parseInt(parts[0]);
-        String type = parts[1];
-        String name = parts[2];
-        TaskStatus status = TaskStatus.valueOf(parts[3]);
-        String description = parts[4];
-        Duration duration = Duration.ofMinutes(Long.parseLong(parts[5]));
-        LocalDateTime startTime = LocalDateTime.parse(parts[6]);
-        int epicId = parts.length > 7 ? Integer.parseInt(parts[7]) : 0;
-
-        return switch (type) {
-            case "TASK" -> new Task(name, description, id, status, duration, startTime);
-            case "EPIC" -> new Epic(name, description, id, status);
-            case "SUBTASK" -> new Subtask(name, description, id, status, epicId, duration, startTime);
-            default -> throw new IllegalArgumentException("Неизвестный тип задачи: " + type);
-        };
-    }
-
-
-    private String toString(Task task) {
-        String type = "TASK";
-        if (task instanceof Epic) {
-            type = "EPIC";
-        } else if (task instanceof Subtask) {
-            type = "SUBTASK";
-        }
-        return String.format("%d,%s,%s,%s,%s,%d,%s,%d",
-                task.getId(),
-                type,
-                task.getName(),
-                task.getStatus(),
-                task.getDescription(),
-                task.getDuration().toMinutes(),
-                task.getStartTime(),
-                task instanceof Subtask ? ((Subtask) task).getEpicId() : 0
-        );
+    private void recordPersisted(long bytes) {
+        LongAdder counter = persistedBytes;
+        if (counter != null) {
+            counter.add(bytes);
+        }
+    }
+
+    private byte[] renderSnapshot() {
+        if (format == SnapshotFormat.BINARY) {
+            return BinarySnapshot.encode(List.of(getAllTasks(), getAllEpics(), getAllSubtasks()));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            writeSnapshot(Channels.newChannel(out));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Пишет CSV-снимок через общий для менеджера {@link TaskCsv.Writer}, поэтому вызывается только под монитором менеджера.
+     * Возвращает число записанных байт.
+     */
+    private long writeSnapshot(WritableByteChannel channel) throws IOException {
+        TaskCsv.Writer writer = csvWriter.open(channel);
+        for (Iterator<Task> tasks = streamAllTasks().iterator(); tasks.hasNext(); ) {
+            writer.write(tasks.next());
+        }
+        for (Iterator<Epic> epics = streamAllEpics().iterator(); epics.hasNext(); ) {
+            writer.write(epics.next());
+        }
+        for (Iterator<Subtask> subtasks = streamAllSubtasks().iterator(); subtasks.hasNext(); ) {
+            writer.write(subtasks.next());
+        }
+        return writer.finish();
+    }
+
+    /**
+     * Пишет снимок во временный файл, дожидается fsync и атомарно подменяет им основной файл.
+     */
+    private void writeDurably(byte[] snapshot) {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp, false)) {
+            out.write(snapshot);
+            out.getFD().sync();
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка сохранения задач в файл", e);
+        }
+        recordPersisted(snapshot.length);
     }
-}
 
+    /**
+     * Повторяет записанную в журнал операцию, не записывая её заново.
+     */
+    private void replay(TaskCsv.Reader record) {
+        if (record.fieldEquals(0, "ADD")) {
+            restore(record.task(1));
+        } else if (record.fieldEquals(0, "UPDATE")) {
+            Task task = record.task(1);
+            if (task instanceof Epic) {
+                super.updateEpic((Epic) task);
+            } else if (task instanceof Subtask) {
+                super.updateSubtask((Subtask) task);
+            } else {
+                super.updateTask(task);
+            }
+        } else if (record.fieldEquals(0, "DELETE")) {
+            int id = record.intValue(2);
+            if (record.fieldEquals(1, "TASK")) {
+                super.deleteTask(id);
+            } else if (record.fieldEquals(1, "EPIC")) {
+                super.deleteEpic(id);
+            } else if (record.fieldEquals(1, "SUBTASK")) {
+                super.deleteSubtasks(id);
+            } else {
+                throw record.error("неизвестный тип задачи " + record.string(1));
+            }
+        } else if (record.fieldEquals(0, "CLEAR")) {
+            if (record.fieldEquals(1, "TASK")) {
+                super.deleteAllTask();
+            } else if (record.fieldEquals(1, "EPIC")) {
+                super.deleteAllEpic();
+            } else if (record.fieldEquals(1, "SUBTASK")) {
+                super.deleteAllSubtask();
+            } else {
+                throw record.error("неизвестный тип задачи " + record.string(1));
+            }
+        } else {
+            throw record.error("неизвестная операция журнала " + record.string(0));
+        }
+    }
+}
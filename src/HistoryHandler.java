@@ -0,0 +1,20 @@
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+
+class HistoryHandler extends BaseHttpHandler {
+    HistoryHandler(TaskManager manager) {
+        super(manager);
+    }
+
+    @Override
+    protected void handleRequest(HttpExchange exchange, String[] path) throws IOException {
+        if (path.length != 1 || !path[0].equals("history")) {
+            sendNotFound(exchange);
+        } else if (!exchange.getRequestMethod().equals("GET")) {
+            sendMethodNotAllowed(exchange);
+        } else {
+            sendText(exchange, 200, TaskJson.toJson(manager.getHistory()));
+        }
+    }
+}
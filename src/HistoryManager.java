@@ -1,4 +1,5 @@
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface HistoryManager {
     void add(Task task);
@@ -6,4 +7,8 @@ public interface HistoryManager {
     void remove(int id);
 
     List<Task> getHistory();
+
+    default Stream<Task> stream() {
+        return getHistory().stream();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Встроенный HTTP API поверх {@link TaskManager}: {@code /tasks}, {@code /subtasks}, {@code /epics},
+ * {@code /history} и {@code /prioritized}, тела запросов и ответов в JSON. Для {@link MeteredTaskManager}
+ * дополнительно доступен {@code /metrics} в текстовом формате Prometheus.
+ * <p>
+ * Запросы обрабатываются параллельно пулом рабочих потоков, поэтому менеджер должен быть потокобезопасным;
+ * по умолчанию используется {@link Managers#getConcurrent()}.
+ */
+public class HttpTaskServer {
+    public static final int PORT = 8080;
+    private static final int BACKLOG = 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public HttpTaskServer() throws IOException {
+        this(Managers.getConcurrent());
+    }
+
+    public HttpTaskServer(TaskManager manager) throws IOException {
+        this(manager, PORT);
+    }
+
+    /**
+     * @param port порт; 0 — любой свободный, выбранный можно узнать через {@link #getPort()}
+     */
+    public HttpTaskServer(TaskManager manager, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        server.createContext("/tasks", new TasksHandler(manager));
+        server.createContext("/subtasks", new SubtasksHandler(manager));
+        server.createContext("/epics", new EpicsHandler(manager));
+        server.createContext("/history", new HistoryHandler(manager));
+        server.createContext("/prioritized", new PrioritizedHandler(manager));
+        if (manager instanceof MeteredTaskManager) {
+            server.createContext("/metrics", new MetricsHandler(manager, ((MeteredTaskManager) manager).getMetrics()));
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2, runnable -> {
+            Thread thread = new Thread(runnable, "http-task-server-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : PORT;
+        HttpTaskServer server = new HttpTaskServer(new MeteredTaskManager(Managers.getConcurrent()), port);
+        server.start();
+        System.out.println("HTTP-сервер запущен на порту " + server.getPort());
+    }
+}
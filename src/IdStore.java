@@ -0,0 +1,224 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Хранилище по целочисленному идентификатору без упаковки ключей: значения лежат в страницах по {@value #PAGE_SIZE}
+ * ссылок, страница id находится по старшим битам, а занятые идентификаторы страницы отмечены битами одного {@code long}.
+ * На запись приходится одна ссылка вместо узла хеш-таблицы и {@code Integer}; следующий занятый id ищется
+ * по 64 идентификатора за шаг. Страница создаётся при первой записи в неё и освобождается, когда в ней не остаётся значений,
+ * поэтому редкие id (например, задачи одного типа среди общего счётчика менеджера) не держат массив до наибольшего id:
+ * каталог страниц стоит 16 байт на {@value #PAGE_SIZE} идентификаторов диапазона и сжимается только при {@link #clear()}.
+ * <p>
+ * После первого вызова {@link #version()} хранилище дополнительно ведёт неизменяемую версию содержимого,
+ * и каждое изменение обновляет её за O(log32 n). Пока версия не запрошена, изменения ничего не стоят сверх страниц.
+ * Изменяемые значения попадают в версию через копирование, переданное в конструктор, чтобы изменение
+ * объекта на месте не меняло уже выданные версии.
+ */
+class IdStore<T> implements Iterable<T> {
+    private static final int PAGE_BITS = 6;
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int INITIAL_PAGES = 4;
+
+    private Object[][] pages;
+    private long[] masks;
+    private int size;
+    private final UnaryOperator<T> versionCopy;
+    private PersistentIdMap<T> version;
+
+    IdStore() {
+        this(UnaryOperator.identity());
+    }
+
+    /**
+     * @param versionCopy копирует значение при переносе в неизменяемую версию
+     */
+    IdStore(UnaryOperator<T> versionCopy) {
+        this.versionCopy = versionCopy;
+        pages = new Object[INITIAL_PAGES][];
+        masks = new long[INITIAL_PAGES];
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(int id) {
+        if (id < 0) {
+            return null;
+        }
+        int page = id >>> PAGE_BITS;
+        if (page >= pages.length || pages[page] == null) {
+            return null;
+        }
+        return (T) pages[page][id & PAGE_MASK];
+    }
+
+    boolean containsKey(int id) {
+        if (id < 0) {
+            return false;
+        }
+        int page = id >>> PAGE_BITS;
+        return page < masks.length && (masks[page] & 1L << (id & PAGE_MASK)) != 0;
+    }
+
+    /**
+     * Кладёт значение по идентификатору и возвращает предыдущее или {@code null}.
+     */
+    T put(int id, T value) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Идентификатор не может быть отрицательным");
+        }
+        if (value == null) {
+            return remove(id);
+        }
+        int page = id >>> PAGE_BITS;
+        if (page >= pages.length) {
+            int length = Math.max(page + 1, pages.length + (pages.length >> 1));
+            pages = Arrays.copyOf(pages, length);
+            masks = Arrays.copyOf(masks, length);
+        }
+        if (pages[page] == null) {
+            pages[page] = new Object[PAGE_SIZE];
+        }
+        T previous = get(id);
+        pages[page][id & PAGE_MASK] = value;
+        if (previous == null) {
+            masks[page] |= 1L << (id & PAGE_MASK);
+            size++;
+        }
+        if (version != null) {
+            version = version.with(id, versionCopy.apply(value));
+        }
+        return previous;
+    }
+
+    T remove(int id) {
+        T previous = get(id);
+        if (previous != null) {
+            int page = id >>> PAGE_BITS;
+            pages[page][id & PAGE_MASK] = null;
+            masks[page] &= ~(1L << (id & PAGE_MASK));
+            if (masks[page] == 0) {
+                pages[page] = null;
+            }
+            size--;
+            if (version != null) {
+                version = version.without(id);
+            }
+        }
+        return previous;
+    }
+
+    void clear() {
+        pages = new Object[INITIAL_PAGES][];
+        masks = new long[INITIAL_PAGES];
+        size = 0;
+        if (version != null) {
+            version = PersistentIdMap.empty();
+        }
+    }
+
+    /**
+     * Неизменяемая версия текущего содержимого. Первый вызов строит её за O(n), последующие возвращают готовую за O(1).
+     */
+    PersistentIdMap<T> version() {
+        if (version == null) {
+            PersistentIdMap<T> built = PersistentIdMap.empty();
+            for (int id = nextId(0); id >= 0; id = nextId(id + 1)) {
+                built = built.with(id, versionCopy.apply(get(id)));
+            }
+            version = built;
+        }
+        return version;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Занятые идентификаторы в порядке возрастания.
+     */
+    IntStream ids() {
+        return IntStream.iterate(nextId(0), id -> id >= 0, id -> nextId(id + 1));
+    }
+
+    /**
+     * Наименьший занятый id не меньше {@code from} или -1.
+     */
+    private int nextId(int from) {
+        int page = from >>> PAGE_BITS;
+        if (from < 0 || page >= masks.length) {
+            return -1;
+        }
+        long word = masks[page] & -1L << (from & PAGE_MASK);
+        while (word == 0) {
+            if (++page == masks.length) {
+                return -1;
+            }
+            word = masks[page];
+        }
+        return page << PAGE_BITS | Long.numberOfTrailingZeros(word);
+    }
+
+    List<T> values() {
+        List<T> result = new ArrayList<>(size);
+        for (T value : this) {
+            result.add(value);
+        }
+        return result;
+    }
+
+    /**
+     * До {@code limit} значений с идентификаторами строго больше {@code afterId}, в порядке возрастания id.
+     */
+    List<T> page(int afterId, int limit) {
+        List<T> page = new ArrayList<>(Math.min(limit, size));
+        for (int id = nextId(afterId < 0 ? 0 : afterId + 1); id >= 0 && page.size() < limit; id = nextId(id + 1)) {
+            page.add(get(id));
+        }
+        return page;
+    }
+
+    /**
+     * Обход в порядке возрастания id. Изменение хранилища во время обхода не поддерживается.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private int next = nextId(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public T next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                T value = get(next);
+                next = nextId(next + 1);
+                return value;
+            }
+        };
+    }
+
+    Stream<T> stream() {
+        Spliterator<T> spliterator = Spliterators.spliterator(iterator(), size,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
+}
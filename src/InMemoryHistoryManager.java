@@ -1,19 +1,17 @@
 import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class InMemoryHistoryManager implements HistoryManager {
 
-    private final Map<Integer, Task> tasks;
-    private final Map<Integer, Node> nodeMap;
+    private final IdStore<Node> nodeMap;
     private Node head;
     private Node tail;
-    private int idCounter;
 
     public InMemoryHistoryManager() {
-        tasks = new HashMap<>();
-        nodeMap = new HashMap<>();
+        nodeMap = new IdStore<>();
         head = null;
         tail = null;
-        idCounter = 1;
     }
 
     @Override
@@ -31,6 +29,32 @@ public class InMemoryHistoryManager implements HistoryManager {
         return getTasks();
     }
 
+    /**
+     * Ленивый обход истории без копирования. Изменение истории во время обхода не поддерживается.
+     */
+    @Override
+    public Stream<Task> stream() {
+        Iterator<Task> iterator = new Iterator<>() {
+            private Node current = head;
+
+            @Override
+            public boolean hasNext() {
+                return current != null;
+            }
+
+            @Override
+            public Task next() {
+                if (current == null) {
+                    throw new NoSuchElementException();
+                }
+                Task task = current.task;
+                current = current.next;
+                return task;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliterator(iterator, nodeMap.size(), Spliterator.ORDERED), false);
+    }
+
     private List<Task> getTasks() {
         List<Task> taskList = new ArrayList<>();
         Node current = head;
@@ -42,14 +66,9 @@ public class InMemoryHistoryManager implements HistoryManager {
     }
 
     private void linkLast(Task task) {
-        task.setId(idCounter++);
-        tasks.put(task.getId(), task);
+        removeNode(task.getId());
         Node newNode = new Node(task.getId(), task);
 
-        if (Objects.equals(head, newNode)) {
-            return;
-        }
-
         if (head == null) {
             head = newNode;
         } else {
@@ -61,25 +80,21 @@ public class InMemoryHistoryManager implements HistoryManager {
     }
 
     private void removeNode(int id) {
-        if (tasks.containsKey(id)) {
-            Node nodeToRemove = nodeMap.get(id);
-            if (nodeToRemove != null) {
-                if (nodeToRemove == head) {
-                    head = head.next;
-                    if (head != null) {
-                        head.prev = null;
-                    }
-                } else if (nodeToRemove == tail) {
-                    tail = tail.prev;
-                    if (tail != null) {
-                        tail.next = null;
-                    }
-                } else {
-                    nodeToRemove.prev.next = nodeToRemove.next;
-                    nodeToRemove.next.prev = nodeToRemove.prev;
+        Node nodeToRemove = nodeMap.remove(id);
+        if (nodeToRemove != null) {
+            if (nodeToRemove == head) {
+                head = head.next;
+                if (head != null) {
+                    head.prev = null;
+                }
+            } else if (nodeToRemove == tail) {
+                tail = tail.prev;
+                if (tail != null) {
+                    tail.next = null;
                 }
-                nodeMap.remove(id);
-                tasks.remove(id);
+            } else {
+                nodeToRemove.prev.next = nodeToRemove.next;
+                nodeToRemove.next.prev = nodeToRemove.prev;
             }
         }
     }
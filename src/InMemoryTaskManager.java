@@ -1,23 +1,44 @@
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class InMemoryTaskManager implements TaskManager {
-    private final Map<Integer, Task> tasks;
-    private final Map<Integer, Epic> epics;
-    private final Map<Integer, Subtask> subtasks;
+    private final IdStore<Task> tasks;
+    private final IdStore<Epic> epics;
+    private final IdStore<Subtask> subtasks;
     private final TreeSet<Task> prioritizedTasks;
+    private final TimeSlotIndex timeSlots;
     private int idCounter;
     private final HistoryManager historyManager;
+    private final TaskEventBus events;
 
     public InMemoryTaskManager() {
-        tasks = new HashMap<>();
-        epics = new HashMap<>();
-        subtasks = new HashMap<>();
+        tasks = new IdStore<Task>(TaskSnapshot::copyOf);
+        epics = new IdStore<Epic>(TaskSnapshot::copyOf);
+        subtasks = new IdStore<Subtask>(TaskSnapshot::copyOf);
         prioritizedTasks = new TreeSet<Task>(new TaskStartTimeComparator());
+        timeSlots = new TimeSlotIndex();
         idCounter = 1;
         historyManager = new InMemoryHistoryManager();
+        events = new TaskEventBus();
+    }
+
+    /**
+     * События изменений. Публикуются только изменения через методы менеджера, восстановление из файла событий не порождает.
+     */
+    @Override
+    public TaskEventBus events() {
+        return events;
+    }
+
+    /**
+     * Первый вызов включает ведение версий хранилищ и строит их за O(n), дальше снимок берётся за O(1),
+     * а каждое изменение хранилища обновляет версию за O(log32 n).
+     */
+    @Override
+    public TaskSnapshot snapshot() {
+        return new TaskSnapshot(tasks.version(), epics.version(), subtasks.version());
     }
 
     @Override
@@ -25,48 +46,183 @@ public class InMemoryTaskManager implements TaskManager {
         return new ArrayList<>(prioritizedTasks);
     }
 
+    /**
+     * Страница расписания: до {@code limit} задач, начинающихся строго позже {@code afterStartTime}.
+     * Для первой страницы передаётся {@code null}.
+     */
     @Override
-    public void addTask(Task task) {
-        if (tasks.values().stream().anyMatch(existingTask -> isTimeOverlap(task, existingTask))) {
-            throw new IllegalArgumentException("Задача пересекается по времени выполнения с другой задачей");
+    public List<Task> getPrioritizedTasks(LocalDateTime afterStartTime, int limit) {
+        checkLimit(limit);
+        Iterable<Task> tail = afterStartTime == null ? prioritizedTasks : prioritizedTasks.tailSet(probe(afterStartTime), false);
+        List<Task> page = new ArrayList<>(Math.min(limit, prioritizedTasks.size()));
+        for (Task task : tail) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(task);
+        }
+        return page;
+    }
+
+    @Override
+    public Stream<Task> streamPrioritizedTasks() {
+        return prioritizedTasks.stream();
+    }
+
+    /**
+     * Задачи и подзадачи, выполняющиеся хотя бы частично в интервале [from, to), в порядке начала.
+     */
+    @Override
+    public List<Task> getTasksBetween(LocalDateTime from, LocalDateTime to) {
+        return timeSlots.between(from, to);
+    }
+
+    /**
+     * Ближайшая задача или подзадача, начинающаяся строго позже {@code time}, или {@code null}.
+     */
+    @Override
+    public Task nextTaskAfter(LocalDateTime time) {
+        return timeSlots.nextAfter(time);
+    }
+
+    @Override
+    public List<Task> tasksActiveAt(LocalDateTime time) {
+        Task task = timeSlots.activeAt(time);
+        return task == null ? List.of() : List.of(task);
+    }
+
+    /**
+     * Самое раннее время не раньше {@code notBefore}, с которого задача длительностью {@code duration}
+     * ни с чем не пересекается.
+     */
+    @Override
+    public LocalDateTime findFreeSlot(LocalDateTime notBefore, Duration duration) {
+        return timeSlots.findFree(notBefore, duration);
+    }
+
+    /**
+     * Ставит задачу или подзадачу в самый ранний свободный промежуток не раньше {@code notBefore} и добавляет её.
+     */
+    @Override
+    public void scheduleTask(Task task, LocalDateTime notBefore) {
+        if (task instanceof Epic) {
+            throw new IllegalArgumentException("Время эпика складывается из подзадач, его нельзя запланировать");
         }
+        task.setStartTime(findFreeSlot(notBefore, task.getDuration()));
+        if (task instanceof Subtask) {
+            addSubtask((Subtask) task);
+        } else {
+            addTask(task);
+        }
+    }
+
+    /**
+     * Размещает пачку задач и подзадач друг за другом по свободным промежуткам и добавляет её через {@link #addAll}.
+     * Эпики пачки добавляются без размещения. Если {@link #addAll} отклоняет пачку, задачам возвращается прежнее время начала.
+     */
+    @Override
+    public void scheduleAll(Collection<? extends Task> items, LocalDateTime notBefore) {
+        LocalDateTime[] startTimes = TimeSlotIndex.startTimes(items);
+        timeSlots.placeAll(items, notBefore);
+        try {
+            addAll(items);
+        } catch (RuntimeException e) {
+            TimeSlotIndex.restoreStartTimes(items, startTimes);
+            throw e;
+        }
+    }
+
+    @Override
+    public void addTask(Task task) {
+        checkTimeSlot(task, 0);
         task.setId(idCounter++);
         tasks.put(task.getId(), task);
+        timeSlots.add(task);
         if (task.getStartTime() != null) {
             prioritizedTasks.add(task);
         }
+        events.publish(TaskEvent.Type.CREATED, task);
     }
 
+    /**
+     * Возвращает представление подзадач эпика только для чтения, без копирования.
+     * Представление отражает последующие изменения подзадач этого эпика.
+     */
     @Override
     public List<Subtask> getSubtasksOfEpic(int epicId) {
-        return subtasks.values().stream()
-                .filter(subtask -> subtask.getEpicId() == epicId)
-                .collect(Collectors.toList());
+        Epic epic = epics.get(epicId);
+        return epic == null ? List.of() : epic.getSubtasks();
     }
 
     @Override
     public List<Task> getAllTasks() {
-        return new ArrayList<>(tasks.values());
+        return tasks.values();
     }
 
     @Override
     public List<Epic> getAllEpics() {
-        return new ArrayList<>(epics.values());
+        return epics.values();
     }
 
     @Override
     public List<Subtask> getAllSubtasks() {
-        return new ArrayList<>(subtasks.values());
+        return subtasks.values();
+    }
+
+    /**
+     * Страница задач с идентификаторами строго больше {@code afterId}, в порядке возрастания id.
+     * Для первой страницы передаётся 0, для следующей — id последней задачи предыдущей страницы.
+     */
+    @Override
+    public List<Task> getAllTasks(int afterId, int limit) {
+        return page(tasks, afterId, limit);
+    }
+
+    @Override
+    public List<Epic> getAllEpics(int afterId, int limit) {
+        return page(epics, afterId, limit);
+    }
+
+    @Override
+    public List<Subtask> getAllSubtasks(int afterId, int limit) {
+        return page(subtasks, afterId, limit);
+    }
+
+    /**
+     * Ленивый обход без копирования в порядке возрастания id. Изменение менеджера во время обхода не поддерживается.
+     */
+    @Override
+    public Stream<Task> streamAllTasks() {
+        return tasks.stream();
+    }
+
+    @Override
+    public Stream<Epic> streamAllEpics() {
+        return epics.stream();
+    }
+
+    @Override
+    public Stream<Subtask> streamAllSubtasks() {
+        return subtasks.stream();
     }
 
     @Override
     public void deleteAllTask() {
+        publishAll(TaskEvent.Type.DELETED, tasks);
+        tasks.ids().forEach(timeSlots::remove);
         tasks.clear();
         prioritizedTasks.clear();
     }
 
     @Override
     public void deleteAllEpic() {
+        if (events.hasSubscribers()) {
+            List<TaskEvent> deleted = new ArrayList<>(subtasks.size() + epics.size());
+            subtasks.forEach(subtask -> deleted.add(new TaskEvent(TaskEvent.Type.DELETED, subtask)));
+            epics.forEach(epic -> deleted.add(new TaskEvent(TaskEvent.Type.DELETED, epic)));
+            events.publish(deleted);
+        }
+        subtasks.ids().forEach(timeSlots::remove);
         epics.clear();
         subtasks.clear();
         prioritizedTasks.clear();
@@ -74,11 +230,21 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public void deleteAllSubtask() {
-        for (Epic epic : epics.values()) {
-            epic.getSubtasks().clear();
-            updateStatus(epic);
+        List<TaskEvent> changed = events.hasSubscribers() ? new ArrayList<>() : null;
+        if (changed != null) {
+            subtasks.forEach(subtask -> changed.add(new TaskEvent(TaskEvent.Type.DELETED, subtask)));
+        }
+        for (Epic epic : epics) {
+            if (changed != null && !epic.getSubtasks().isEmpty()) {
+                changed.add(new TaskEvent(TaskEvent.Type.EPIC_CHANGED, epic));
+            }
+            epic.clearSubtasks();
         }
+        subtasks.ids().forEach(timeSlots::remove);
         subtasks.clear();
+        if (changed != null) {
+            events.publish(changed);
+        }
     }
 
     @Override
@@ -112,57 +278,69 @@ public class InMemoryTaskManager implements TaskManager {
     public void addEpic(Epic epic) {
         epic.setId(idCounter++);
         epics.put(epic.getId(), epic);
+        events.publish(TaskEvent.Type.CREATED, epic);
     }
 
     @Override
     public void addSubtask(Subtask subtask) {
+        checkTimeSlot(subtask, 0);
         subtask.setId(idCounter++);
         subtasks.put(subtask.getId(), subtask);
+        timeSlots.add(subtask);
         Epic epic = epics.get(subtask.getEpicId());
         if (epic != null) {
             epic.addSubtask(subtask);
-            updateStatus(epic);
         }
+        publishWithEpic(TaskEvent.Type.CREATED, subtask, epic);
     }
 
     @Override
     public void updateTask(Task task) {
         if (tasks.containsKey(task.getId())) {
-            tasks.put(task.getId(), task);
+            checkTimeSlot(task, task.getId());
+            prioritizedTasks.remove(tasks.put(task.getId(), task));
+            timeSlots.add(task);
             if (task.getStartTime() != null) {
                 prioritizedTasks.add(task);
             } else {
                 prioritizedTasks.remove(task);
             }
+            events.publish(TaskEvent.Type.UPDATED, task);
         }
     }
 
     @Override
     public void updateEpic(Epic epic) {
         if (epics.containsKey(epic.getId())) {
-            epics.put(epic.getId(), epic);
-            updateStatus(epic);
+            epic.adoptSubtasks(epics.put(epic.getId(), epic));
             epic.updateEpicDetails();
+            events.publish(TaskEvent.Type.UPDATED, epic);
         }
     }
 
     @Override
     public void updateSubtask(Subtask subtask) {
         if (subtasks.containsKey(subtask.getId())) {
+            checkTimeSlot(subtask, subtask.getId());
             subtasks.put(subtask.getId(), subtask);
+            timeSlots.add(subtask);
             Epic epic = epics.get(subtask.getEpicId());
             if (epic != null) {
-                updateStatus(epic);
-                epic.updateEpicDetails();
+                epic.updateSubtask(subtask);
             }
+            publishWithEpic(TaskEvent.Type.UPDATED, subtask, epic);
         }
     }
 
     @Override
     public void deleteTask(int id) {
         Task task = tasks.remove(id);
-        if (task != null && task.getStartTime() != null) {
-            prioritizedTasks.remove(task);
+        timeSlots.remove(id);
+        if (task != null) {
+            if (task.getStartTime() != null) {
+                prioritizedTasks.remove(task);
+            }
+            events.publish(TaskEvent.Type.DELETED, task);
         }
     }
 
@@ -170,9 +348,18 @@ public class InMemoryTaskManager implements TaskManager {
     public void deleteEpic(int id) {
         Epic epic = epics.remove(id);
         if (epic != null) {
+            List<TaskEvent> deleted = events.hasSubscribers() ? new ArrayList<>() : null;
             for (Subtask subtask : epic.getSubtasks()) {
                 subtasks.remove(subtask.getId());
+                timeSlots.remove(subtask.getId());
                 prioritizedTasks.remove(subtask);
+                if (deleted != null) {
+                    deleted.add(new TaskEvent(TaskEvent.Type.DELETED, subtask));
+                }
+            }
+            if (deleted != null) {
+                deleted.add(new TaskEvent(TaskEvent.Type.DELETED, epic));
+                events.publish(deleted);
             }
         }
     }
@@ -181,14 +368,13 @@ public class InMemoryTaskManager implements TaskManager {
     public void deleteSubtasks(int id) {
         Subtask subtask = subtasks.remove(id);
         if (subtask != null) {
+            timeSlots.remove(id);
             Epic epic = epics.get(subtask.getEpicId());
             if (epic != null) {
-                epic.getSubtasks().remove(subtask);
-                updateStatus(epic);
-
-                epic.updateEpicDetails();
+                epic.removeSubtask(subtask);
             }
             prioritizedTasks.remove(subtask);
+            publishWithEpic(TaskEvent.Type.DELETED, subtask, epic);
         }
     }
 
@@ -197,40 +383,140 @@ public class InMemoryTaskManager implements TaskManager {
         return historyManager.getHistory();
     }
 
-    private void updateStatus(Epic epic) {
-        if (epic.getSubtasks().isEmpty()) {
-            epic.setStatus(TaskStatus.NEW);
-            epic.setDuration(Duration.ZERO);
-            epic.setStartTime(null);
-            epic.setEndTime(null);
-        } else {
-            boolean allDone = true;
-            boolean allNew = true;
-            for (Subtask subtask : epic.getSubtasks()) {
-                if (subtask.getStatus() != TaskStatus.DONE) {
-                    allDone = false;
-                }
-                if (subtask.getStatus() != TaskStatus.NEW) {
-                    allNew = false;
+    @Override
+    public Stream<Task> streamHistory() {
+        return historyManager.stream();
+    }
+
+    /**
+     * Добавляет пачку задач, эпиков и подзадач: пересечения проверяются одним проходом до любых изменений,
+     * а каждый затронутый эпик пересчитывается один раз. Все сущности получают новые идентификаторы;
+     * подзадача, чей epicId совпадает с исходным id эпика из той же пачки, привязывается к этому эпику
+     * (см. {@link BatchEpics}: неоднозначная ссылка отклоняется до любых изменений).
+     */
+    @Override
+    public void addAll(Collection<? extends Task> items) {
+        List<Task> scheduled = new ArrayList<>();
+        for (Task task : items) {
+            if (!(task instanceof Epic)) {
+                checkTimeSlot(task, 0);
+                scheduled.add(task);
+            }
+        }
+        if (!TimeSlotIndex.areDisjoint(scheduled)) {
+            throw new IllegalArgumentException("Задача пересекается по времени выполнения с другой задачей");
+        }
+
+        BatchEpics batchEpics = BatchEpics.link(items, epics::containsKey);
+        for (Task task : items) {
+            task.setId(idCounter++);
+        }
+        batchEpics.relink();
+        insertAll(items);
+        if (events.hasSubscribers()) {
+            List<TaskEvent> created = new ArrayList<>(items.size());
+            Set<Epic> changedEpics = new LinkedHashSet<>();
+            for (Task task : items) {
+                created.add(new TaskEvent(TaskEvent.Type.CREATED, task));
+                if (task instanceof Subtask) {
+                    Epic epic = epics.get(((Subtask) task).getEpicId());
+                    if (epic != null) {
+                        changedEpics.add(epic);
+                    }
                 }
             }
-            if (allDone) {
-                epic.setStatus(TaskStatus.DONE);
-            } else if (allNew) {
-                epic.setStatus(TaskStatus.NEW);
+            for (Epic epic : changedEpics) {
+                created.add(new TaskEvent(TaskEvent.Type.EPIC_CHANGED, epic));
+            }
+            events.publish(created);
+        }
+    }
+
+    /**
+     * Восстанавливает сохранённую сущность с её исходным идентификатором, без проверки пересечений.
+     * Повторное восстановление уже известного идентификатора ничего не меняет.
+     */
+    protected void restore(Task task) {
+        restoreAll(List.of(task));
+    }
+
+    protected void restoreAll(Collection<? extends Task> items) {
+        List<Task> unknown = new ArrayList<>(items.size());
+        for (Task task : items) {
+            int id = task.getId();
+            if (!tasks.containsKey(id) && !epics.containsKey(id) && !subtasks.containsKey(id)) {
+                unknown.add(task);
+            }
+        }
+        insertAll(unknown);
+    }
+
+    private void insertAll(Collection<? extends Task> items) {
+        Map<Integer, List<Subtask>> subtasksByEpic = new LinkedHashMap<>();
+        for (Task task : items) {
+            int id = task.getId();
+            if (task instanceof Epic) {
+                epics.put(id, (Epic) task);
+            } else if (task instanceof Subtask) {
+                Subtask subtask = (Subtask) task;
+                subtasks.put(id, subtask);
+                timeSlots.add(subtask);
+                subtasksByEpic.computeIfAbsent(subtask.getEpicId(), epicId -> new ArrayList<>()).add(subtask);
             } else {
-                epic.setStatus(TaskStatus.IN_PROGRESS);
+                tasks.put(id, task);
+                timeSlots.add(task);
+                if (task.getStartTime() != null) {
+                    prioritizedTasks.add(task);
+                }
+            }
+            idCounter = Math.max(idCounter, id + 1);
+        }
+        for (Map.Entry<Integer, List<Subtask>> entry : subtasksByEpic.entrySet()) {
+            Epic epic = epics.get(entry.getKey());
+            if (epic != null) {
+                epic.addSubtasks(entry.getValue());
             }
         }
     }
 
-    private boolean isTimeOverlap(Task task1, Task task2) {
-        LocalDateTime start1 = task1.getStartTime();
-        LocalDateTime end1 = task1.getEndTime();
-        LocalDateTime start2 = task2.getStartTime();
-        LocalDateTime end2 = task2.getEndTime();
+    private void publishWithEpic(TaskEvent.Type type, Subtask subtask, Epic epic) {
+        if (!events.hasSubscribers()) {
+            return;
+        }
+        TaskEvent event = new TaskEvent(type, subtask);
+        events.publish(epic == null ? List.of(event) : List.of(event, new TaskEvent(TaskEvent.Type.EPIC_CHANGED, epic)));
+    }
 
-        return !(end1.isBefore(start2) || start1.isAfter(end2));
+    private <T extends Task> void publishAll(TaskEvent.Type type, Iterable<T> items) {
+        if (!events.hasSubscribers()) {
+            return;
+        }
+        List<TaskEvent> batch = new ArrayList<>();
+        for (Task task : items) {
+            batch.add(new TaskEvent(type, task));
+        }
+        events.publish(batch);
+    }
+
+    private static <T> List<T> page(IdStore<T> store, int afterId, int limit) {
+        checkLimit(limit);
+        return store.page(afterId, limit);
+    }
+
+    private static void checkLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Размер страницы не может быть отрицательным");
+        }
+    }
+
+    private static Task probe(LocalDateTime startTime) {
+        return new Task(null, null, 0, null, Duration.ZERO, startTime);
+    }
+
+    private void checkTimeSlot(Task task, int ignoredId) {
+        if (!timeSlots.isFree(task, ignoredId)) {
+            throw new IllegalArgumentException("Задача пересекается по времени выполнения с другой задачей");
+        }
     }
 
     private static class TaskStartTimeComparator implements Comparator<Task> {
@@ -0,0 +1,21 @@
+import java.io.File;
+
+/**
+ * Точка входа исполняемого jar: открывает хранилище задач и печатает сводку по нему.
+ * Путь к файлу передаётся первым аргументом, по умолчанию {@code tasks.csv} в текущем каталоге.
+ */
+public class Main {
+    private static final String DEFAULT_FILE = "tasks.csv";
+
+    public static void main(String[] args) {
+        File file = new File(args.length > 0 ? args[0] : DEFAULT_FILE);
+        try (FileBackedTaskManager manager = file.exists()
+                ? FileBackedTaskManager.loadFromFile(file)
+                : new FileBackedTaskManager(file)) {
+            System.out.println("Файл: " + file.getAbsolutePath());
+            System.out.println("Задач: " + manager.getAllTasks().size());
+            System.out.println("Эпиков: " + manager.getAllEpics().size());
+            System.out.println("Подзадач: " + manager.getAllSubtasks().size());
+        }
+    }
+}
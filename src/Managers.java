@@ -2,4 +2,16 @@ public class Managers {
     public static TaskManager getDefault() {
         return new InMemoryTaskManager();
     }
+
+    public static TaskManager getConcurrent() {
+        return new ConcurrentTaskManager();
+    }
+
+    public static TaskManager getCompact() {
+        return new CompactTaskManager();
+    }
+
+    public static TaskManager getSharded() {
+        return new ShardedTaskManager();
+    }
 }
@@ -0,0 +1,479 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Декоратор менеджера, который считает вызовы и задержки каждого метода в {@link TaskMetrics}
+ * и отдаёт размеры хранилищ, истории и расписания как показатели.
+ * <p>
+ * Гистограммы операций получаются один раз в конструкторе и лежат в массиве по порядковому номеру операции,
+ * так что вызов добавляет только два {@link System#nanoTime()} и запись в гистограмму. Задержка включает время
+ * ожидания блокировок декорируемого менеджера; вызовы, завершившиеся исключением, тоже учитываются.
+ * Если декорируемый менеджер — {@link FileBackedTaskManager}, в те же метрики пишутся сохранение и загрузка файла.
+ * Показатели размеров читают менеджер из потока выгрузки, поэтому при выгрузке во время записи он должен быть потокобезопасным.
+ */
+public class MeteredTaskManager implements TaskManager {
+    private final TaskManager delegate;
+    private final TaskMetrics metrics;
+    private final LatencyHistogram[] timers;
+
+    public MeteredTaskManager(TaskManager delegate) {
+        this(delegate, new TaskMetrics());
+    }
+
+    public MeteredTaskManager(TaskManager delegate, TaskMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        Operation[] operations = Operation.values();
+        timers = new LatencyHistogram[operations.length];
+        for (Operation operation : operations) {
+            timers[operation.ordinal()] = metrics.timer(operation.methodName);
+        }
+        metrics.gauge("tasks", () -> delegate.streamAllTasks().count());
+        metrics.gauge("epics", () -> delegate.streamAllEpics().count());
+        metrics.gauge("subtasks", () -> delegate.streamAllSubtasks().count());
+        metrics.gauge("history_size", () -> delegate.streamHistory().count());
+        metrics.gauge("prioritized_tasks", () -> delegate.streamPrioritizedTasks().count());
+        if (delegate instanceof FileBackedTaskManager) {
+            ((FileBackedTaskManager) delegate).instrument(metrics);
+        }
+    }
+
+    public TaskMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public TaskEventBus events() {
+        return delegate.events();
+    }
+
+    @Override
+    public List<Task> getAllTasks() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getAllTasks();
+        } finally {
+            timers[Operation.GET_ALL_TASKS.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public List<Epic> getAllEpics() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getAllEpics();
+        } finally {
+            timers[Operation.GET_ALL_EPICS.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public List<Subtask> getAllSubtasks() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getAllSubtasks();
+        } finally {
+            timers[Operation.GET_ALL_SUBTASKS.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public List<Task> getAllTasks(int afterId, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getAllTasks(afterId, limit);
+        } finally {
+            timers[Operation.GET_ALL_TASKS_PAGE.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public List<Epic> getAllEpics(int afterId, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getAllEpics(afterId, limit);
+        } finally {
+            timers[Operation.GET_ALL_EPICS_PAGE.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public List<Subtask> getAllSubtasks(int afterId, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getAllSubtasks(afterId, limit);
+        } finally {
+            timers[Operation.GET_ALL_SUBTASKS_PAGE.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public Stream<Task> streamAllTasks() {
+        long start = System.nanoTime();
+        try {
+            return delegate.streamAllTasks();
+        } finally {
+            timers[Operation.STREAM_ALL_TASKS.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public Stream<Epic> streamAllEpics() {
+        long start = System.nanoTime();
+        try {
+            return delegate.streamAllEpics();
+        } finally {
+            timers[Operation.STREAM_ALL_EPICS.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public Stream<Subtask> streamAllSubtasks() {
+        long start = System.nanoTime();
+        try {
+            return delegate.streamAllSubtasks();
+        } finally {
+            timers[Operation.STREAM_ALL_SUBTASKS.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public void deleteAllTask() {
+        long start = System.nanoTime();
+        try {
+            delegate.deleteAllTask();
+        } finally {
+            timers[Operation.DELETE_ALL_TASK.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public void deleteAllEpic() {
+        long start = System.nanoTime();
+        try {
+            delegate.deleteAllEpic();
+        } finally {
+            timers[Operation.DELETE_ALL_EPIC.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public void deleteAllSubtask() {
+        long start = System.nanoTime();
+        try {
+            delegate.deleteAllSubtask();
+        } finally {
+            timers[Operation.DELETE_ALL_SUBTASK.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public Task getTask(int id) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getTask(id);
+        } finally {
+            timers[Operation.GET_TASK.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public Task getEpic(int id) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getEpic(id);
+        } finally {
+            timers[Operation.GET_EPIC.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public Task getSubtasks(int id) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getSubtasks(id);
+        } finally {
+            timers[Operation.GET_SUBTASKS.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public void addTask(Task task) {
+        long start = System.nanoTime();
+        try {
+            delegate.addTask(task);
+        } finally {
+            timers[Operation.ADD_TASK.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public void addEpic(Epic epic) {
+        long start = System.nanoTime();
+        try {
+            delegate.addEpic(epic);
+        } finally {
+            timers[Operation.ADD_EPIC.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public void addSubtask(Subtask subtask) {
+        long start = System.nanoTime();
+        try {
+            delegate.addSubtask(subtask);
+        } finally {
+            timers[Operation.ADD_SUBTASK.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public void addAll(Collection<? extends Task> tasks) {
+        long start = System.nanoTime();
+        try {
+            delegate.addAll(tasks);
+        } finally {
+            timers[Operation.ADD_ALL.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        long start = System.nanoTime();
+        try {
+            delegate.updateTask(task);
+        } finally {
+            timers[Operation.UPDATE_TASK.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        long start = System.nanoTime();
+        try {
+            delegate.updateEpic(epic);
+        } finally {
+            timers[Operation.UPDATE_EPIC.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        long start = System.nanoTime();
+        try {
+            delegate.updateSubtask(subtask);
+        } finally {
+            timers[Operation.UPDATE_SUBTASK.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public void deleteTask(int id) {
+        long start = System.nanoTime();
+        try {
+            delegate.deleteTask(id);
+        } finally {
+            timers[Operation.DELETE_TASK.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public void deleteEpic(int id) {
+        long start = System.nanoTime();
+        try {
+            delegate.deleteEpic(id);
+        } finally {
+            timers[Operation.DELETE_EPIC.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public void deleteSubtasks(int id) {
+        long start = System.nanoTime();
+        try {
+            delegate.deleteSubtasks(id);
+        } finally {
+            timers[Operation.DELETE_SUBTASKS.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public List<Subtask> getSubtasksOfEpic(int epicId) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getSubtasksOfEpic(epicId);
+        } finally {
+            timers[Operation.GET_SUBTASKS_OF_EPIC.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getHistory();
+        } finally {
+            timers[Operation.GET_HISTORY.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getPrioritizedTasks();
+        } finally {
+            timers[Operation.GET_PRIORITIZED_TASKS.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime afterStartTime, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getPrioritizedTasks(afterStartTime, limit);
+        } finally {
+            timers[Operation.GET_PRIORITIZED_TASKS_PAGE.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public Stream<Task> streamPrioritizedTasks() {
+        long start = System.nanoTime();
+        try {
+            return delegate.streamPrioritizedTasks();
+        } finally {
+            timers[Operation.STREAM_PRIORITIZED_TASKS.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public List<Task> getTasksBetween(LocalDateTime from, LocalDateTime to) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getTasksBetween(from, to);
+        } finally {
+            timers[Operation.GET_TASKS_BETWEEN.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public Task nextTaskAfter(LocalDateTime time) {
+        long start = System.nanoTime();
+        try {
+            return delegate.nextTaskAfter(time);
+        } finally {
+            timers[Operation.NEXT_TASK_AFTER.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public List<Task> tasksActiveAt(LocalDateTime time) {
+        long start = System.nanoTime();
+        try {
+            return delegate.tasksActiveAt(time);
+        } finally {
+            timers[Operation.TASKS_ACTIVE_AT.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public LocalDateTime findFreeSlot(LocalDateTime notBefore, Duration duration) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findFreeSlot(notBefore, duration);
+        } finally {
+            timers[Operation.FIND_FREE_SLOT.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public void scheduleTask(Task task, LocalDateTime notBefore) {
+        long start = System.nanoTime();
+        try {
+            delegate.scheduleTask(task, notBefore);
+        } finally {
+            timers[Operation.SCHEDULE_TASK.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public void scheduleAll(Collection<? extends Task> tasks, LocalDateTime notBefore) {
+        long start = System.nanoTime();
+        try {
+            delegate.scheduleAll(tasks, notBefore);
+        } finally {
+            timers[Operation.SCHEDULE_ALL.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public Stream<Task> streamHistory() {
+        long start = System.nanoTime();
+        try {
+            return delegate.streamHistory();
+        } finally {
+            timers[Operation.STREAM_HISTORY.ordinal()].recordSince(start);
+        }
+    }
+
+    @Override
+    public TaskSnapshot snapshot() {
+        long start = System.nanoTime();
+        try {
+            return delegate.snapshot();
+        } finally {
+            timers[Operation.SNAPSHOT.ordinal()].recordSince(start);
+        }
+    }
+
+    private enum Operation {
+        GET_ALL_TASKS("getAllTasks"),
+        GET_ALL_EPICS("getAllEpics"),
+        GET_ALL_SUBTASKS("getAllSubtasks"),
+        GET_ALL_TASKS_PAGE("getAllTasksPage"),
+        GET_ALL_EPICS_PAGE("getAllEpicsPage"),
+        GET_ALL_SUBTASKS_PAGE("getAllSubtasksPage"),
+        STREAM_ALL_TASKS("streamAllTasks"),
+        STREAM_ALL_EPICS("streamAllEpics"),
+        STREAM_ALL_SUBTASKS("streamAllSubtasks"),
+        DELETE_ALL_TASK("deleteAllTask"),
+        DELETE_ALL_EPIC("deleteAllEpic"),
+        DELETE_ALL_SUBTASK("deleteAllSubtask"),
+        GET_TASK("getTask"),
+        GET_EPIC("getEpic"),
+        GET_SUBTASKS("getSubtasks"),
+        ADD_TASK("addTask"),
+        ADD_EPIC("addEpic"),
+        ADD_SUBTASK("addSubtask"),
+        ADD_ALL("addAll"),
+        UPDATE_TASK("updateTask"),
+        UPDATE_EPIC("updateEpic"),
+        UPDATE_SUBTASK("updateSubtask"),
+        DELETE_TASK("deleteTask"),
+        DELETE_EPIC("deleteEpic"),
+        DELETE_SUBTASKS("deleteSubtasks"),
+        GET_SUBTASKS_OF_EPIC("getSubtasksOfEpic"),
+        GET_HISTORY("getHistory"),
+        GET_PRIORITIZED_TASKS("getPrioritizedTasks"),
+        GET_PRIORITIZED_TASKS_PAGE("getPrioritizedTasksPage"),
+        STREAM_PRIORITIZED_TASKS("streamPrioritizedTasks"),
+        GET_TASKS_BETWEEN("getTasksBetween"),
+        NEXT_TASK_AFTER("nextTaskAfter"),
+        TASKS_ACTIVE_AT("tasksActiveAt"),
+        FIND_FREE_SLOT("findFreeSlot"),
+        SCHEDULE_TASK("scheduleTask"),
+        SCHEDULE_ALL("scheduleAll"),
+        STREAM_HISTORY("streamHistory"),
+        SNAPSHOT("snapshot");
+
+        private final String methodName;
+
+        Operation(String methodName) {
+            this.methodName = methodName;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+
+class MetricsHandler extends BaseHttpHandler {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final TaskMetrics metrics;
+
+    MetricsHandler(TaskManager manager, TaskMetrics metrics) {
+        super(manager);
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void handleRequest(HttpExchange exchange, String[] path) throws IOException {
+        if (path.length != 1 || !path[0].equals("metrics")) {
+            sendNotFound(exchange);
+        } else if (!exchange.getRequestMethod().equals("GET")) {
+            sendMethodNotAllowed(exchange);
+        } else {
+            sendText(exchange, 200, metrics.scrape(), CONTENT_TYPE);
+        }
+    }
+}
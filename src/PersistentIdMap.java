@@ -0,0 +1,158 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Неизменяемое отображение id → значение в виде 32-ричного префиксного дерева по битам идентификатора.
+ * Изменение копирует только путь от корня до листа (O(log32 n), не больше семи узлов),
+ * остальные узлы делятся между версиями, поэтому старая версия остаётся целой и доступной без блокировок.
+ * Обход идёт в порядке возрастания id.
+ */
+final class PersistentIdMap<T> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final PersistentIdMap<?> EMPTY = new PersistentIdMap<>(new Object[WIDTH], 0, 0);
+
+    private final Object[] root;
+    private final int shift;
+    private final int size;
+
+    private PersistentIdMap(Object[] root, int shift, int size) {
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> PersistentIdMap<T> empty() {
+        return (PersistentIdMap<T>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(int id) {
+        if (id < 0 || id >= capacity(shift)) {
+            return null;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(id >>> level) & MASK];
+            if (node == null) {
+                return null;
+            }
+        }
+        return (T) node[id & MASK];
+    }
+
+    /**
+     * Новая версия, в которой по {@code id} лежит {@code value}; {@code null} удаляет значение.
+     */
+    PersistentIdMap<T> with(int id, T value) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Идентификатор не может быть отрицательным");
+        }
+        if (value == null) {
+            return without(id);
+        }
+        Object[] newRoot = root;
+        int newShift = shift;
+        while (id >= capacity(newShift)) {
+            Object[] parent = new Object[WIDTH];
+            parent[0] = newRoot;
+            newRoot = parent;
+            newShift += BITS;
+        }
+        boolean added = get(id) == null;
+        return new PersistentIdMap<>(set(newRoot, newShift, id, value), newShift, added ? size + 1 : size);
+    }
+
+    PersistentIdMap<T> without(int id) {
+        if (get(id) == null) {
+            return this;
+        }
+        Object[] newRoot = set(root, shift, id, null);
+        return size == 1 ? empty() : new PersistentIdMap<>(newRoot == null ? new Object[WIDTH] : newRoot, shift, size - 1);
+    }
+
+    List<T> values() {
+        return page(-1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * До {@code limit} значений с идентификаторами строго больше {@code afterId}, в порядке возрастания id.
+     */
+    List<T> page(int afterId, int limit) {
+        List<T> page = new ArrayList<>(Math.min(limit, size));
+        if (limit > 0) {
+            forEachFrom(Math.max(afterId + 1, 0), value -> {
+                page.add(value);
+                return page.size() < limit;
+            });
+        }
+        return page;
+    }
+
+    /**
+     * Обходит значения с id не меньше {@code fromId}, пока {@code action} возвращает {@code true}.
+     */
+    void forEachFrom(int fromId, Predicate<? super T> action) {
+        if (fromId < capacity(shift)) {
+            visit(root, shift, fromId, action);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean visit(Object[] node, int level, int fromId, Predicate<? super T> action) {
+        // Первая ветка начинается с индекса fromId на этом уровне, все следующие — с нуля.
+        for (int i = (fromId >>> level) & MASK; i < WIDTH; i++) {
+            Object child = node[i];
+            if (child != null) {
+                if (level == 0) {
+                    if (!action.test((T) child)) {
+                        return false;
+                    }
+                } else if (!visit((Object[]) child, level - BITS, fromId, action)) {
+                    return false;
+                }
+            }
+            fromId = 0;
+        }
+        return true;
+    }
+
+    // Копирует путь до листа; возвращает null, если узел опустел.
+    private static Object[] set(Object[] node, int level, int id, Object value) {
+        Object[] copy = node.clone();
+        int index = (id >>> level) & MASK;
+        if (level == 0) {
+            copy[index] = value;
+        } else {
+            Object[] child = (Object[]) node[index];
+            if (child == null) {
+                child = new Object[WIDTH];
+            }
+            copy[index] = set(child, level - BITS, id, value);
+        }
+        if (value == null && copy[index] == null) {
+            for (Object sibling : copy) {
+                if (sibling != null) {
+                    return copy;
+                }
+            }
+            return null;
+        }
+        return copy;
+    }
+
+    private static long capacity(int shift) {
+        return 1L << (shift + BITS);
+    }
+}
@@ -0,0 +1,43 @@
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+
+/**
+ * {@code GET /prioritized[?after=<ISO-8601>&limit=]} — задачи по времени начала, при параметрах постранично.
+ */
+class PrioritizedHandler extends BaseHttpHandler {
+    PrioritizedHandler(TaskManager manager) {
+        super(manager);
+    }
+
+    @Override
+    protected void handleRequest(HttpExchange exchange, String[] path) throws IOException {
+        if (path.length != 1 || !path[0].equals("prioritized")) {
+            sendNotFound(exchange);
+            return;
+        }
+        if (!exchange.getRequestMethod().equals("GET")) {
+            sendMethodNotAllowed(exchange);
+            return;
+        }
+        Map<String, String> parameters = query(exchange);
+        if (!parameters.containsKey("after") && !parameters.containsKey("limit")) {
+            sendText(exchange, 200, TaskJson.toJson(manager.getPrioritizedTasks()));
+            return;
+        }
+        LocalDateTime after = null;
+        String value = parameters.get("after");
+        if (value != null) {
+            try {
+                after = LocalDateTime.parse(value);
+            } catch (DateTimeParseException e) {
+                throw new BadRequestException("Некорректное время: " + value);
+            }
+        }
+        int limit = intParameter(parameters, "limit", Integer.MAX_VALUE);
+        sendText(exchange, 200, TaskJson.toJson(manager.getPrioritizedTasks(after, limit)));
+    }
+}
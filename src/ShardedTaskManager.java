@@ -0,0 +1,1128 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Потокобезопасный менеджер задач, разделённый на шарды.
+ * <p>
+ * Шард владеет своими хранилищами и расписанием задач и меняется только под своей блокировкой, поэтому запись
+ * в разные шарды идёт параллельно. Эпики и задачи распределяются по шардам по кругу, подзадача попадает в шард
+ * своего эпика. Каждый шард выдаёт идентификаторы своего класса вычетов {@code id % shardCount}, так что шард
+ * находится по id без общего счётчика, а хранилище шарда индексируется плотно по {@code id / shardCount}.
+ * <p>
+ * Запрет пересечений по времени общий для всех задач, поэтому индекс слотов один на менеджер и меняется под
+ * короткой блокировкой {@link StampedLock}; задачи без времени её не берут. Порядок захвата всегда «шарды по
+ * возрастанию номера, эпик, расписание». Выборки по всем шардам собираются k-путевым слиянием и согласованы
+ * только внутри шарда; согласованное состояние всего менеджера даёт {@link #snapshot()}.
+ */
+public class ShardedTaskManager implements TaskManager {
+    private static final int DEFAULT_HISTORY_CAPACITY = 1000;
+    private static final int MAX_SCHEDULE_ATTEMPTS = 16;
+    private static final Comparator<Task> BY_ID = Comparator.comparingInt(Task::getId);
+    private static final Comparator<Task> BY_START = Comparator.comparing(Task::getStartTime);
+    private static final int STREAM_CHUNK = 256;
+
+    private final Shard[] shards;
+    private final AtomicInteger nextShard;
+    private final TimeSlotIndex timeSlots;
+    private final StampedLock scheduleLock;
+    private final HistoryManager historyManager;
+    private final TaskEventBus events;
+    private final Object versionLock;
+    private boolean versioned; // меняется под блокировками всех шардов
+    private volatile TaskSnapshot version;
+
+    public ShardedTaskManager() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ShardedTaskManager(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Число шардов должно быть положительным");
+        }
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+        nextShard = new AtomicInteger();
+        timeSlots = new TimeSlotIndex();
+        scheduleLock = new StampedLock();
+        historyManager = new ConcurrentHistoryManager(DEFAULT_HISTORY_CAPACITY);
+        events = new TaskEventBus();
+        versionLock = new Object();
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * События публикуются под блокировкой шарда, поэтому изменения одной задачи или одного эпика
+     * приходят подписчику в порядке их выполнения.
+     */
+    @Override
+    public TaskEventBus events() {
+        return events;
+    }
+
+    /**
+     * Первый вызов на время построения версии блокирует все шарды и строит её за O(n), дальше снимок берётся за O(1),
+     * а каждая операция переносит в версию затронутые id под той же блокировкой шарда.
+     */
+    @Override
+    public TaskSnapshot snapshot() {
+        TaskSnapshot current = version;
+        if (current != null) {
+            return current;
+        }
+        lockAll();
+        try {
+            synchronized (versionLock) {
+                if (version == null) {
+                    versioned = true;
+                    TaskSnapshot built = TaskSnapshot.empty();
+                    for (Shard shard : shards) {
+                        for (Epic epic : shard.epics) {
+                            built = built.with(epic);
+                        }
+                        for (Task task : shard.tasks) {
+                            built = built.with(task);
+                        }
+                        for (Subtask subtask : shard.subtasks) {
+                            built = built.with(subtask);
+                        }
+                    }
+                    version = built;
+                }
+                return version;
+            }
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public List<Task> getAllTasks() {
+        return getAllTasks(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Epic> getAllEpics() {
+        return getAllEpics(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Subtask> getAllSubtasks() {
+        return getAllSubtasks(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Страница задач с идентификаторами строго больше {@code afterId}: каждый шард отдаёт до {@code limit} своих,
+     * результаты сливаются по id.
+     */
+    @Override
+    public List<Task> getAllTasks(int afterId, int limit) {
+        return page(shard -> shard.tasks, afterId, limit);
+    }
+
+    @Override
+    public List<Epic> getAllEpics(int afterId, int limit) {
+        return page(shard -> shard.epics, afterId, limit);
+    }
+
+    @Override
+    public List<Subtask> getAllSubtasks(int afterId, int limit) {
+        return page(shard -> shard.subtasks, afterId, limit);
+    }
+
+    /**
+     * Ленивое слияние по id: каждый шард отдаёт свои задачи страницами по {@value #STREAM_CHUNK} под своей блокировкой,
+     * следующая страница читается, только когда обход дошёл до конца предыдущей. Обход слабо согласован:
+     * видит каждую задачу не более одного раза, но может не увидеть изменения, сделанные во время обхода.
+     */
+    @Override
+    public Stream<Task> streamAllTasks() {
+        return stream(idPages(shard -> shard.tasks), BY_ID);
+    }
+
+    @Override
+    public Stream<Epic> streamAllEpics() {
+        return stream(idPages(shard -> shard.epics), BY_ID);
+    }
+
+    @Override
+    public Stream<Subtask> streamAllSubtasks() {
+        return stream(idPages(shard -> shard.subtasks), BY_ID);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        return getPrioritizedTasks(null, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime afterStartTime, int limit) {
+        checkLimit(limit);
+        List<List<Task>> runs = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                NavigableMap<LocalDateTime, Task> tail = afterStartTime == null
+                        ? shard.prioritized : shard.prioritized.tailMap(afterStartTime, false);
+                List<Task> run = new ArrayList<>(Math.min(limit, tail.size()));
+                for (Task task : tail.values()) {
+                    if (run.size() == limit) {
+                        break;
+                    }
+                    run.add(task);
+                }
+                runs.add(run);
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return merge(runs, BY_START, limit);
+    }
+
+    /**
+     * Ленивое слияние расписаний шардов по времени начала, так же слабо согласованное, как {@link #streamAllTasks()}.
+     */
+    @Override
+    public Stream<Task> streamPrioritizedTasks() {
+        return stream((shard, last, limit) -> {
+            NavigableMap<LocalDateTime, Task> tail = last == null
+                    ? shard.prioritized : shard.prioritized.tailMap(last.getStartTime(), false);
+            List<Task> page = new ArrayList<>(Math.min(limit, tail.size()));
+            for (Task task : tail.values()) {
+                if (page.size() == limit) {
+                    break;
+                }
+                page.add(task);
+            }
+            return page;
+        }, BY_START);
+    }
+
+    @Override
+    public List<Task> getTasksBetween(LocalDateTime from, LocalDateTime to) {
+        long stamp = scheduleLock.readLock();
+        try {
+            return timeSlots.between(from, to);
+        } finally {
+            scheduleLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Task nextTaskAfter(LocalDateTime time) {
+        long stamp = scheduleLock.readLock();
+        try {
+            return timeSlots.nextAfter(time);
+        } finally {
+            scheduleLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Task> tasksActiveAt(LocalDateTime time) {
+        long stamp = scheduleLock.readLock();
+        try {
+            Task task = timeSlots.activeAt(time);
+            return task == null ? List.of() : List.of(task);
+        } finally {
+            scheduleLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public LocalDateTime findFreeSlot(LocalDateTime notBefore, Duration duration) {
+        long stamp = scheduleLock.readLock();
+        try {
+            return timeSlots.findFree(notBefore, duration);
+        } finally {
+            scheduleLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Task getTask(int id) {
+        Shard shard = shardOf(id);
+        shard.lock.lock();
+        try {
+            return viewed(shard.tasks.get(local(id)));
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public Task getEpic(int id) {
+        Shard shard = shardOf(id);
+        shard.lock.lock();
+        try {
+            return viewed(shard.epics.get(local(id)));
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public Task getSubtasks(int id) {
+        Shard shard = shardOf(id);
+        shard.lock.lock();
+        try {
+            return viewed(shard.subtasks.get(local(id)));
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Subtask> getSubtasksOfEpic(int epicId) {
+        Shard shard = shardOf(epicId);
+        shard.lock.lock();
+        try {
+            Epic epic = shard.epics.get(local(epicId));
+            if (epic == null) {
+                return List.of();
+            }
+            synchronized (epic) {
+                return List.copyOf(epic.getSubtasks());
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return historyManager.getHistory();
+    }
+
+    @Override
+    public Stream<Task> streamHistory() {
+        return historyManager.stream();
+    }
+
+    @Override
+    public void addTask(Task task) {
+        insertTask(task, null);
+    }
+
+    @Override
+    public void addEpic(Epic epic) {
+        Shard shard = nextShard();
+        shard.lock.lock();
+        try {
+            epic.setId(shard.nextId(shards.length));
+            shard.epics.put(local(epic.getId()), epic);
+            events.publish(TaskEvent.Type.CREATED, epic);
+            refreshVersion(epic.getId());
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public void addSubtask(Subtask subtask) {
+        insertSubtask(subtask, null);
+    }
+
+    @Override
+    public void scheduleTask(Task task, LocalDateTime notBefore) {
+        if (task instanceof Epic) {
+            throw new IllegalArgumentException("Время эпика складывается из подзадач, его нельзя запланировать");
+        }
+        if (task instanceof Subtask) {
+            insertSubtask((Subtask) task, notBefore);
+        } else {
+            insertTask(task, notBefore);
+        }
+    }
+
+    /**
+     * Размещение считается оптимистично под блокировкой чтения расписания, затем пачка добавляется через
+     * {@link #addAll}. Попытка повторяется, только если размещение устарело: расписание успело измениться
+     * и задачи пачки пересекаются с ним. Остальные отказы {@link #addAll} выбрасываются сразу,
+     * а задачам возвращается прежнее время начала.
+     */
+    @Override
+    public void scheduleAll(Collection<? extends Task> items, LocalDateTime notBefore) {
+        LocalDateTime[] startTimes = TimeSlotIndex.startTimes(items);
+        for (int attempt = 0; ; attempt++) {
+            long stamp = scheduleLock.readLock();
+            try {
+                timeSlots.placeAll(items, notBefore);
+            } finally {
+                scheduleLock.unlockRead(stamp);
+            }
+            try {
+                addAll(items);
+                return;
+            } catch (RuntimeException e) {
+                boolean stale;
+                stamp = scheduleLock.readLock();
+                try {
+                    stale = !timeSlots.areFree(items);
+                } finally {
+                    scheduleLock.unlockRead(stamp);
+                }
+                if (!stale || attempt == MAX_SCHEDULE_ATTEMPTS) {
+                    TimeSlotIndex.restoreStartTimes(items, startTimes);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Добавляет пачку под блокировками всех затронутых шардов: пересечения проверяются до любых изменений,
+     * подзадача, чей epicId совпадает с исходным id эпика из той же пачки, попадает в его шард и привязывается к нему.
+     */
+    @Override
+    public void addAll(Collection<? extends Task> items) {
+        List<Task> batch = new ArrayList<>(items);
+        Shard[] targets = new Shard[batch.size()];
+        BatchEpics batchEpics = BatchEpics.link(batch, this::containsEpic);
+        Map<Epic, Shard> epicShards = new IdentityHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Task task = batch.get(i);
+            if (!(task instanceof Subtask)) {
+                targets[i] = nextShard();
+                if (task instanceof Epic) {
+                    epicShards.put((Epic) task, targets[i]);
+                }
+            }
+        }
+        boolean[] involved = new boolean[shards.length];
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.get(i) instanceof Subtask) {
+                Subtask subtask = (Subtask) batch.get(i);
+                Epic batchEpic = batchEpics.epicOf(subtask);
+                targets[i] = batchEpic != null ? epicShards.get(batchEpic) : shardOf(subtask.getEpicId());
+            }
+            involved[targets[i].index] = true;
+        }
+
+        lock(involved);
+        try {
+            insertAll(batch, targets, batchEpics);
+        } finally {
+            unlock(involved);
+        }
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        int id = task.getId();
+        Shard shard = shardOf(id);
+        shard.lock.lock();
+        try {
+            if (shard.tasks.get(local(id)) == null) {
+                return;
+            }
+            LocalDateTime previousStart = reschedule(task);
+            if (previousStart != null) {
+                shard.prioritized.remove(previousStart);
+            }
+            shard.tasks.put(local(id), task);
+            if (task.getStartTime() != null) {
+                shard.prioritized.put(task.getStartTime(), task);
+            }
+            events.publish(TaskEvent.Type.UPDATED, task);
+            refreshVersion(id);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        int id = epic.getId();
+        Shard shard = shardOf(id);
+        shard.lock.lock();
+        try {
+            Epic previous = shard.epics.get(local(id));
+            if (previous == null) {
+                return;
+            }
+            synchronized (epic) {
+                epic.adoptSubtasks(previous);
+                epic.updateEpicDetails();
+            }
+            shard.epics.put(local(id), epic);
+            events.publish(TaskEvent.Type.UPDATED, epic);
+            refreshVersion(id);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        int id = subtask.getId();
+        Shard shard = shardOf(id);
+        shard.lock.lock();
+        try {
+            if (shard.subtasks.get(local(id)) == null) {
+                return;
+            }
+            reschedule(subtask);
+            shard.subtasks.put(local(id), subtask);
+            Epic epic = epicIn(shard, subtask.getEpicId());
+            if (epic != null) {
+                synchronized (epic) {
+                    epic.updateSubtask(subtask);
+                }
+            }
+            publishWithEpic(TaskEvent.Type.UPDATED, subtask, epic);
+            refreshVersion(id);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteTask(int id) {
+        Shard shard = shardOf(id);
+        shard.lock.lock();
+        try {
+            Task task = shard.tasks.remove(local(id));
+            if (task == null) {
+                return;
+            }
+            LocalDateTime start = unschedule(id);
+            if (start != null) {
+                shard.prioritized.remove(start);
+            }
+            events.publish(TaskEvent.Type.DELETED, task);
+            refreshVersion(id);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteEpic(int id) {
+        Shard shard = shardOf(id);
+        shard.lock.lock();
+        try {
+            Epic epic = shard.epics.remove(local(id));
+            if (epic == null) {
+                return;
+            }
+            List<Subtask> removed;
+            synchronized (epic) {
+                removed = new ArrayList<>(epic.getSubtasks());
+                epic.clearSubtasks();
+            }
+            for (Subtask subtask : removed) {
+                shard.subtasks.remove(local(subtask.getId()));
+            }
+            unscheduleAll(removed);
+            publishDeleted(removed, null);
+            events.publish(TaskEvent.Type.DELETED, epic);
+            refreshVersion(id, removed);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteSubtasks(int id) {
+        Shard shard = shardOf(id);
+        shard.lock.lock();
+        try {
+            Subtask subtask = shard.subtasks.remove(local(id));
+            if (subtask == null) {
+                return;
+            }
+            unschedule(id);
+            Epic epic = epicIn(shard, subtask.getEpicId());
+            if (epic != null) {
+                synchronized (epic) {
+                    epic.removeSubtask(subtask);
+                }
+            }
+            publishWithEpic(TaskEvent.Type.DELETED, subtask, epic);
+            refreshVersion(id);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteAllTask() {
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                List<Task> removed = shard.tasks.values();
+                shard.tasks.clear();
+                shard.prioritized.clear();
+                unscheduleAll(removed);
+                publishDeleted(removed, null);
+                refreshVersion(removed);
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void deleteAllEpic() {
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                List<Subtask> removedSubtasks = shard.subtasks.values();
+                List<Epic> removedEpics = shard.epics.values();
+                for (Epic epic : removedEpics) {
+                    synchronized (epic) {
+                        epic.clearSubtasks();
+                    }
+                }
+                shard.subtasks.clear();
+                shard.epics.clear();
+                unscheduleAll(removedSubtasks);
+                publishDeleted(removedSubtasks, null);
+                publishDeleted(removedEpics, null);
+                refreshVersion(removedSubtasks);
+                refreshVersion(removedEpics);
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void deleteAllSubtask() {
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                List<Subtask> removed = shard.subtasks.values();
+                List<Task> changedEpics = new ArrayList<>();
+                for (Epic epic : shard.epics) {
+                    synchronized (epic) {
+                        if (!epic.getSubtasks().isEmpty()) {
+                            changedEpics.add(epic);
+                            epic.clearSubtasks();
+                        }
+                    }
+                }
+                shard.subtasks.clear();
+                unscheduleAll(removed);
+                if (!removed.isEmpty() && events.hasSubscribers()) {
+                    List<TaskEvent> batch = new ArrayList<>(removed.size() + changedEpics.size());
+                    for (Subtask subtask : removed) {
+                        batch.add(new TaskEvent(TaskEvent.Type.DELETED, subtask));
+                    }
+                    for (Task epic : changedEpics) {
+                        batch.add(new TaskEvent(TaskEvent.Type.EPIC_CHANGED, epic));
+                    }
+                    events.publish(batch);
+                }
+                refreshVersion(removed);
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    private void insertTask(Task task, LocalDateTime notBefore) {
+        Shard shard = nextShard();
+        shard.lock.lock();
+        try {
+            place(shard, task, notBefore);
+            shard.tasks.put(local(task.getId()), task);
+            if (task.getStartTime() != null) {
+                shard.prioritized.put(task.getStartTime(), task);
+            }
+            events.publish(TaskEvent.Type.CREATED, task);
+            refreshVersion(task.getId());
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    private void insertSubtask(Subtask subtask, LocalDateTime notBefore) {
+        Shard shard = shardOf(subtask.getEpicId());
+        shard.lock.lock();
+        try {
+            place(shard, subtask, notBefore);
+            shard.subtasks.put(local(subtask.getId()), subtask);
+            Epic epic = epicIn(shard, subtask.getEpicId());
+            if (epic != null) {
+                synchronized (epic) {
+                    epic.addSubtask(subtask);
+                }
+            }
+            publishWithEpic(TaskEvent.Type.CREATED, subtask, epic);
+            refreshVersion(subtask.getId());
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    // Вызывается под блокировками всех шардов из targets
+    private void insertAll(List<Task> batch, Shard[] targets, BatchEpics batchEpics) {
+        List<Task> scheduled = new ArrayList<>();
+        long stamp = scheduleLock.writeLock();
+        try {
+            for (Task task : batch) {
+                if (!(task instanceof Epic)) {
+                    checkTimeSlot(task, 0);
+                    scheduled.add(task);
+                }
+            }
+            if (!TimeSlotIndex.areDisjoint(scheduled)) {
+                throw new IllegalArgumentException("Задача пересекается по времени выполнения с другой задачей");
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).setId(targets[i].nextId(shards.length));
+            }
+            batchEpics.relink();
+            for (Task task : scheduled) {
+                timeSlots.add(task);
+            }
+        } finally {
+            scheduleLock.unlockWrite(stamp);
+        }
+
+        Map<Epic, List<Subtask>> subtasksByEpic = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Task task = batch.get(i);
+            Shard shard = targets[i];
+            if (task instanceof Epic) {
+                shard.epics.put(local(task.getId()), (Epic) task);
+            } else if (!(task instanceof Subtask)) {
+                shard.tasks.put(local(task.getId()), task);
+                if (task.getStartTime() != null) {
+                    shard.prioritized.put(task.getStartTime(), task);
+                }
+            }
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.get(i) instanceof Subtask) {
+                Subtask subtask = (Subtask) batch.get(i);
+                targets[i].subtasks.put(local(subtask.getId()), subtask);
+                Epic epic = epicIn(targets[i], subtask.getEpicId());
+                if (epic != null) {
+                    subtasksByEpic.computeIfAbsent(epic, key -> new ArrayList<>()).add(subtask);
+                }
+            }
+        }
+        for (Map.Entry<Epic, List<Subtask>> entry : subtasksByEpic.entrySet()) {
+            synchronized (entry.getKey()) {
+                entry.getKey().addSubtasks(entry.getValue());
+            }
+        }
+        if (events.hasSubscribers()) {
+            List<TaskEvent> created = new ArrayList<>(batch.size() + subtasksByEpic.size());
+            for (Task task : batch) {
+                created.add(new TaskEvent(TaskEvent.Type.CREATED, task));
+            }
+            for (Epic epic : subtasksByEpic.keySet()) {
+                created.add(new TaskEvent(TaskEvent.Type.EPIC_CHANGED, epic));
+            }
+            events.publish(created);
+        }
+        refreshVersion(batch);
+    }
+
+    /**
+     * Выдаёт задаче id шарда и занимает её слот. Задаче без времени и без {@code notBefore} расписание не нужно,
+     * и блокировка расписания не берётся.
+     */
+    private void place(Shard shard, Task task, LocalDateTime notBefore) {
+        if (notBefore == null && task.getStartTime() == null) {
+            task.setId(shard.nextId(shards.length));
+            return;
+        }
+        long stamp = scheduleLock.writeLock();
+        try {
+            if (notBefore != null) {
+                task.setStartTime(timeSlots.findFree(notBefore, task.getDuration()));
+            }
+            checkTimeSlot(task, 0);
+            task.setId(shard.nextId(shards.length));
+            timeSlots.add(task);
+        } finally {
+            scheduleLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Переносит слот задачи и возвращает прежнее начало. Прежнее начало берётся из индекса,
+     * потому что задачу могли изменить на месте до вызова update.
+     */
+    private LocalDateTime reschedule(Task task) {
+        long stamp = scheduleLock.writeLock();
+        try {
+            checkTimeSlot(task, task.getId());
+            TimeSlotIndex.Slot slot = timeSlots.get(task.getId());
+            timeSlots.add(task);
+            return slot == null ? null : slot.start;
+        } finally {
+            scheduleLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Освобождает слот и возвращает его начало или {@code null}, если слота не было.
+     */
+    private LocalDateTime unschedule(int id) {
+        long stamp = scheduleLock.writeLock();
+        try {
+            TimeSlotIndex.Slot slot = timeSlots.get(id);
+            timeSlots.remove(id);
+            return slot == null ? null : slot.start;
+        } finally {
+            scheduleLock.unlockWrite(stamp);
+        }
+    }
+
+    private void unscheduleAll(List<? extends Task> removed) {
+        if (removed.isEmpty()) {
+            return;
+        }
+        long stamp = scheduleLock.writeLock();
+        try {
+            for (Task task : removed) {
+                timeSlots.remove(task.getId());
+            }
+        } finally {
+            scheduleLock.unlockWrite(stamp);
+        }
+    }
+
+    private <T extends Task> List<T> page(Function<Shard, IdStore<T>> store, int afterId, int limit) {
+        checkLimit(limit);
+        List<List<T>> runs = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                runs.add(store.apply(shard).page(Math.floorDiv(afterId - shard.index, shards.length), limit));
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return merge(runs, BY_ID, limit);
+    }
+
+    private <T extends Task> ShardPages<T> idPages(Function<Shard, IdStore<T>> store) {
+        return (shard, last, limit) -> store.apply(shard).page(last == null ? -1 : local(last.getId()), limit);
+    }
+
+    private <T extends Task> Stream<T> stream(ShardPages<T> pages, Comparator<Task> order) {
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(new MergingIterator<>(pages, order),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * Сливает упорядоченные списки шардов в один, до {@code limit} элементов.
+     */
+    private static <T extends Task> List<T> merge(List<List<T>> runs, Comparator<Task> order, int limit) {
+        int total = 0;
+        for (List<T> run : runs) {
+            total += run.size();
+        }
+        List<T> merged = new ArrayList<>(Math.min(total, limit));
+        PriorityQueue<Cursor<T>> heads = new PriorityQueue<>(runs.size(), (a, b) -> order.compare(a.head(), b.head()));
+        for (List<T> run : runs) {
+            if (!run.isEmpty()) {
+                heads.add(new Cursor<>(run));
+            }
+        }
+        while (merged.size() < limit && !heads.isEmpty()) {
+            Cursor<T> cursor = heads.poll();
+            merged.add(cursor.head());
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    private Shard nextShard() {
+        return shards[Math.floorMod(nextShard.getAndIncrement(), shards.length)];
+    }
+
+    private boolean containsEpic(int id) {
+        Shard shard = shardOf(id);
+        shard.lock.lock();
+        try {
+            return epicIn(shard, id) != null;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    private Shard shardOf(int id) {
+        return shards[Math.floorMod(id, shards.length)];
+    }
+
+    private int local(int id) {
+        return id < 0 ? -1 : id / shards.length;
+    }
+
+    // Эпик с этим id, если он лежит в шарде; подзадача может ссылаться на эпик другого шарда или на несуществующий
+    private Epic epicIn(Shard shard, int epicId) {
+        return shardOf(epicId) == shard ? shard.epics.get(local(epicId)) : null;
+    }
+
+    private Task viewed(Task task) {
+        if (task != null) {
+            historyManager.add(task);
+        }
+        return task;
+    }
+
+    private void refreshVersion(int id) {
+        if (versioned) {
+            synchronized (versionLock) {
+                version = refreshed(version, id);
+            }
+        }
+    }
+
+    private void refreshVersion(Collection<? extends Task> changed) {
+        refreshVersion(-1, changed);
+    }
+
+    /**
+     * Переносит в версию текущие значения {@code id} (если он неотрицателен) и всех {@code changed} за один шаг.
+     * Вызывается под блокировками шардов, которым принадлежат эти id.
+     */
+    private void refreshVersion(int id, Collection<? extends Task> changed) {
+        if (!versioned || id < 0 && changed.isEmpty()) {
+            return;
+        }
+        synchronized (versionLock) {
+            TaskSnapshot next = version;
+            if (id >= 0) {
+                next = refreshed(next, id);
+            }
+            for (Task task : changed) {
+                next = refreshed(next, task.getId());
+            }
+            version = next;
+        }
+    }
+
+    private TaskSnapshot refreshed(TaskSnapshot snapshot, int id) {
+        Shard shard = shardOf(id);
+        Task live = shard.tasks.get(local(id));
+        if (live == null) {
+            live = shard.epics.get(local(id));
+        }
+        if (live == null) {
+            live = shard.subtasks.get(local(id));
+        }
+        return live == null ? snapshot.without(id) : snapshot.with(live);
+    }
+
+    private void lockAll() {
+        for (Shard shard : shards) {
+            shard.lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = shards.length - 1; i >= 0; i--) {
+            shards[i].lock.unlock();
+        }
+    }
+
+    private void lock(boolean[] involved) {
+        for (int i = 0; i < shards.length; i++) {
+            if (involved[i]) {
+                shards[i].lock.lock();
+            }
+        }
+    }
+
+    private void unlock(boolean[] involved) {
+        for (int i = shards.length - 1; i >= 0; i--) {
+            if (involved[i]) {
+                shards[i].lock.unlock();
+            }
+        }
+    }
+
+    private void publishWithEpic(TaskEvent.Type type, Subtask subtask, Epic epic) {
+        if (!events.hasSubscribers()) {
+            return;
+        }
+        TaskEvent event = new TaskEvent(type, subtask);
+        events.publish(epic == null ? List.of(event) : List.of(event, new TaskEvent(TaskEvent.Type.EPIC_CHANGED, epic)));
+    }
+
+    private void publishDeleted(List<? extends Task> removed, Epic epic) {
+        if (removed.isEmpty() || !events.hasSubscribers()) {
+            return;
+        }
+        List<TaskEvent> batch = new ArrayList<>(removed.size() + 1);
+        for (Task task : removed) {
+            batch.add(new TaskEvent(TaskEvent.Type.DELETED, task));
+        }
+        if (epic != null) {
+            batch.add(new TaskEvent(TaskEvent.Type.EPIC_CHANGED, epic));
+        }
+        events.publish(batch);
+    }
+
+    private static void checkLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Размер страницы не может быть отрицательным");
+        }
+    }
+
+    // Вызывается под блокировкой записи расписания
+    private void checkTimeSlot(Task task, int ignoredId) {
+        if (!timeSlots.isFree(task, ignoredId)) {
+            throw new IllegalArgumentException("Задача пересекается по времени выполнения с другой задачей");
+        }
+    }
+
+    /**
+     * Часть менеджера, которой владеет одна блокировка: хранилища по {@code id / shardCount} и расписание задач шарда.
+     */
+    private static class Shard {
+        final int index;
+        final ReentrantLock lock;
+        final IdStore<Task> tasks;
+        final IdStore<Epic> epics;
+        final IdStore<Subtask> subtasks;
+        final TreeMap<LocalDateTime, Task> prioritized;
+        int nextSequence;
+
+        Shard(int index) {
+            this.index = index;
+            lock = new ReentrantLock();
+            tasks = new IdStore<>();
+            epics = new IdStore<>();
+            subtasks = new IdStore<>();
+            prioritized = new TreeMap<>();
+            nextSequence = 1;
+        }
+
+        int nextId(int shardCount) {
+            return nextSequence++ * shardCount + index;
+        }
+    }
+
+    /**
+     * Постраничное чтение упорядоченных элементов одного шарда.
+     */
+    private interface ShardPages<T> {
+        /**
+         * До {@code limit} элементов шарда, следующих за {@code last} ({@code null} — с начала); вызывается под блокировкой шарда.
+         */
+        List<T> page(Shard shard, T last, int limit);
+    }
+
+    /**
+     * k-путевое слияние страниц шардов: в памяти держится не больше одной страницы на шард.
+     */
+    private class MergingIterator<T extends Task> implements Iterator<T> {
+        private final ShardPages<T> pages;
+        private final PriorityQueue<ShardRun> heads;
+
+        MergingIterator(ShardPages<T> pages, Comparator<Task> order) {
+            this.pages = pages;
+            heads = new PriorityQueue<>(shards.length, (a, b) -> order.compare(a.head(), b.head()));
+            for (Shard shard : shards) {
+                ShardRun run = new ShardRun(shard);
+                if (run.fill(null)) {
+                    heads.add(run);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            ShardRun run = heads.poll();
+            if (run == null) {
+                throw new NoSuchElementException();
+            }
+            T next = run.head();
+            if (run.advance()) {
+                heads.add(run);
+            }
+            return next;
+        }
+
+        private class ShardRun {
+            private final Shard shard;
+            private List<T> page;
+            private int position;
+
+            ShardRun(Shard shard) {
+                this.shard = shard;
+            }
+
+            T head() {
+                return page.get(position);
+            }
+
+            boolean advance() {
+                if (++position < page.size()) {
+                    return true;
+                }
+                return page.size() == STREAM_CHUNK && fill(page.get(page.size() - 1));
+            }
+
+            boolean fill(T last) {
+                shard.lock.lock();
+                try {
+                    page = pages.page(shard, last, STREAM_CHUNK);
+                } finally {
+                    shard.lock.unlock();
+                }
+                position = 0;
+                return !page.isEmpty();
+            }
+        }
+    }
+
+    private static class Cursor<T> {
+        private final List<T> run;
+        private int position;
+
+        Cursor(List<T> run) {
+            this.run = run;
+        }
+
+        T head() {
+            return run.get(position);
+        }
+
+        boolean advance() {
+            return ++position < run.size();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+import java.util.List;
+
+class SubtasksHandler extends EntityHttpHandler<Subtask> {
+    SubtasksHandler(TaskManager manager) {
+        super(manager, "subtasks");
+    }
+
+    @Override
+    protected List<Subtask> page(int afterId, int limit) {
+        return manager.getAllSubtasks(afterId, limit);
+    }
+
+    @Override
+    protected List<Subtask> all() {
+        return manager.getAllSubtasks();
+    }
+
+    @Override
+    protected Task get(int id) {
+        return manager.getSubtasks(id);
+    }
+
+    @Override
+    protected Subtask parse(String body) {
+        Subtask subtask = TaskJson.parseSubtask(body);
+        List<Epic> epic = manager.getAllEpics(subtask.getEpicId() - 1, 1);
+        if (epic.isEmpty() || epic.get(0).getId() != subtask.getEpicId()) {
+            throw new BadRequestException("Эпик " + subtask.getEpicId() + " не найден");
+        }
+        return subtask;
+    }
+
+    @Override
+    protected void add(Subtask subtask) {
+        manager.addSubtask(subtask);
+    }
+
+    @Override
+    protected void update(Subtask subtask) {
+        manager.updateSubtask(subtask);
+    }
+
+    @Override
+    protected void delete(int id) {
+        manager.deleteSubtasks(id);
+    }
+
+    @Override
+    protected void deleteAll() {
+        manager.deleteAllSubtask();
+    }
+}
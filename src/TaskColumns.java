@@ -0,0 +1,385 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Колоночное хранилище задач, эпиков и подзадач: поля лежат в параллельных примитивных массивах по индексу id.
+ * <p>
+ * На строку приходится 26 байт: тип и статус по байту, начало в минутах от эпохи ({@link #NO_START}, если не задано),
+ * длительность в минутах, id эпика и номера названия и описания в пуле строк. Одинаковые строки хранятся один раз.
+ * Время хранится с точностью до минуты. Объекты задач создаются только при чтении
+ * через {@link #materialize(int)}, для эпика вместе с его подзадачами.
+ * <p>
+ * После первого вызова {@link #version()} колонки дополнительно ведут неизменяемый снимок из копий строк:
+ * каждое изменение обновляет его за O(log32 n), а сам снимок отдаётся за O(1).
+ */
+class TaskColumns {
+    static final byte NONE = 0;
+    static final byte TASK = 1;
+    static final byte EPIC = 2;
+    static final byte SUBTASK = 3;
+    static final long NO_START = Long.MIN_VALUE;
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final byte NO_STATUS = -1;
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+
+    private byte[] kinds;
+    private byte[] statuses;
+    private long[] starts;
+    private int[] durations;
+    private int[] epicIds;
+    private int[] names;
+    private int[] descriptions;
+    private final BitSet[] idsByKind;
+    private final IdStore<Children> children;
+    private final StringPool strings;
+    private TaskSnapshot version;
+
+    TaskColumns() {
+        kinds = new byte[INITIAL_CAPACITY];
+        statuses = new byte[INITIAL_CAPACITY];
+        starts = new long[INITIAL_CAPACITY];
+        durations = new int[INITIAL_CAPACITY];
+        epicIds = new int[INITIAL_CAPACITY];
+        names = new int[INITIAL_CAPACITY];
+        descriptions = new int[INITIAL_CAPACITY];
+        idsByKind = new BitSet[]{null, new BitSet(), new BitSet(), new BitSet()};
+        children = new IdStore<>();
+        strings = new StringPool();
+    }
+
+    static byte kindOf(Task task) {
+        if (task instanceof Epic) {
+            return EPIC;
+        } else if (task instanceof Subtask) {
+            return SUBTASK;
+        }
+        return TASK;
+    }
+
+    byte kind(int id) {
+        return id >= 0 && id < kinds.length ? kinds[id] : NONE;
+    }
+
+    boolean contains(int id, byte kind) {
+        return kind(id) == kind;
+    }
+
+    /**
+     * Записывает строку задачи по её id, заменяя прежнюю. Подзадача привязывается к эпику, если он уже сохранён;
+     * у эпика при замене сохраняется список подзадач.
+     */
+    void put(Task task) {
+        int id = task.getId();
+        if (id < 0) {
+            throw new IllegalArgumentException("Идентификатор не может быть отрицательным");
+        }
+        ensureCapacity(id);
+        byte kind = kindOf(task);
+        byte previous = kinds[id];
+        if (previous != NONE) {
+            strings.release(names[id]);
+            strings.release(descriptions[id]);
+            if (previous == SUBTASK) {
+                unlink(id);
+            } else if (previous == EPIC && kind != EPIC) {
+                children.remove(id);
+            }
+            idsByKind[previous].clear(id);
+        }
+        kinds[id] = kind;
+        statuses[id] = task.getStatus() == null ? NO_STATUS : (byte) task.getStatus().ordinal();
+        starts[id] = toEpochMinute(task.getStartTime());
+        durations[id] = task.getDuration() == null ? 0 : Math.toIntExact(task.getDuration().toMinutes());
+        names[id] = strings.acquire(task.getName());
+        descriptions[id] = strings.acquire(task.getDescription());
+        epicIds[id] = kind == SUBTASK ? ((Subtask) task).getEpicId() : 0;
+        idsByKind[kind].set(id);
+        if (kind == SUBTASK) {
+            link(id);
+        }
+        if (version != null) {
+            version = version.withOwned(row(id));
+        }
+    }
+
+    /**
+     * Удаляет строку. Подзадачи удаляемого эпика остаются, их удаляет вызывающий.
+     */
+    void remove(int id) {
+        byte kind = kind(id);
+        if (kind == NONE) {
+            return;
+        }
+        if (kind == SUBTASK) {
+            unlink(id);
+        } else if (kind == EPIC) {
+            children.remove(id);
+        }
+        strings.release(names[id]);
+        strings.release(descriptions[id]);
+        idsByKind[kind].clear(id);
+        kinds[id] = NONE;
+        if (version != null) {
+            version = version.without(id);
+        }
+    }
+
+    /**
+     * Удаляет все строки типа. Для подзадач списки подзадач эпиков очищаются целиком.
+     */
+    void clear(byte kind) {
+        BitSet ids = idsByKind[kind];
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            strings.release(names[id]);
+            strings.release(descriptions[id]);
+            kinds[id] = NONE;
+        }
+        ids.clear();
+        if (kind == SUBTASK) {
+            for (Children list : children) {
+                list.size = 0;
+            }
+        } else if (kind == EPIC) {
+            children.clear();
+        }
+        if (version != null) {
+            version = kind == TASK ? version.withoutTasks() : kind == EPIC ? version.withoutEpics() : version.withoutSubtasks();
+        }
+    }
+
+    /**
+     * Неизменяемый снимок всех строк. Первый вызов строит его за O(n), последующие возвращают готовый за O(1).
+     */
+    TaskSnapshot version() {
+        if (version == null) {
+            TaskSnapshot built = TaskSnapshot.empty();
+            for (byte kind = TASK; kind <= SUBTASK; kind++) {
+                BitSet ids = idsByKind[kind];
+                for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                    built = built.withOwned(row(id));
+                }
+            }
+            version = built;
+        }
+        return version;
+    }
+
+    int count(byte kind) {
+        return idsByKind[kind].cardinality();
+    }
+
+    /**
+     * Следующий id типа {@code kind} строго больше {@code afterId} или -1.
+     */
+    int nextId(byte kind, int afterId) {
+        return idsByKind[kind].nextSetBit(Math.max(afterId + 1, 0));
+    }
+
+    IntStream ids(byte kind) {
+        return idsByKind[kind].stream();
+    }
+
+    long start(int id) {
+        return starts[id];
+    }
+
+    /**
+     * Окончание в минутах от эпохи; имеет смысл, только если начало задано.
+     */
+    long end(int id) {
+        return starts[id] + durations[id];
+    }
+
+    int epicId(int id) {
+        return epicIds[id];
+    }
+
+    int subtaskCount(int epicId) {
+        Children list = children.get(epicId);
+        return list == null ? 0 : list.size;
+    }
+
+    /**
+     * Идентификаторы подзадач эпика в порядке возрастания, копией.
+     */
+    int[] subtaskIds(int epicId) {
+        Children list = children.get(epicId);
+        return list == null ? new int[0] : Arrays.copyOf(list.ids, list.size);
+    }
+
+    /**
+     * Создаёт объект по строке или возвращает {@code null}, если строки нет.
+     * Эпик собирается вместе с подзадачами, поэтому его статус и время пересчитываются по ним.
+     */
+    Task materialize(int id) {
+        switch (kind(id)) {
+            case TASK:
+                return new Task(strings.get(names[id]), strings.get(descriptions[id]), id, status(id),
+                        Duration.ofMinutes(durations[id]), fromEpochMinute(starts[id]));
+            case SUBTASK:
+                return new Subtask(strings.get(names[id]), strings.get(descriptions[id]), id, status(id),
+                        epicIds[id], Duration.ofMinutes(durations[id]), fromEpochMinute(starts[id]));
+            case EPIC:
+                Epic epic = new Epic(strings.get(names[id]), strings.get(descriptions[id]), id, status(id));
+                int[] subtaskIds = subtaskIds(id);
+                if (subtaskIds.length > 0) {
+                    List<Subtask> subtasks = new ArrayList<>(subtaskIds.length);
+                    for (int subtaskId : subtaskIds) {
+                        subtasks.add((Subtask) materialize(subtaskId));
+                    }
+                    epic.addSubtasks(subtasks);
+                }
+                return epic;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Объект строки без подзадач: снимок собирает эпики из своих подзадач сам.
+     */
+    private Task row(int id) {
+        return kind(id) == EPIC ? new Epic(strings.get(names[id]), strings.get(descriptions[id]), id, status(id)) : materialize(id);
+    }
+
+    static long toEpochMinute(LocalDateTime time) {
+        return time == null ? NO_START : Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    static LocalDateTime fromEpochMinute(long epochMinute) {
+        return epochMinute == NO_START ? null : LocalDateTime.ofEpochSecond(epochMinute * 60, 0, ZoneOffset.UTC);
+    }
+
+    private TaskStatus status(int id) {
+        return statuses[id] == NO_STATUS ? null : STATUSES[statuses[id]];
+    }
+
+    private void link(int subtaskId) {
+        int epicId = epicIds[subtaskId];
+        if (!contains(epicId, EPIC)) {
+            return;
+        }
+        Children list = children.get(epicId);
+        if (list == null) {
+            list = new Children();
+            children.put(epicId, list);
+        }
+        list.add(subtaskId);
+    }
+
+    private void unlink(int subtaskId) {
+        Children list = children.get(epicIds[subtaskId]);
+        if (list != null) {
+            list.remove(subtaskId);
+        }
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < kinds.length) {
+            return;
+        }
+        int capacity = Math.max(id + 1, kinds.length + (kinds.length >> 1));
+        kinds = Arrays.copyOf(kinds, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        durations = Arrays.copyOf(durations, capacity);
+        epicIds = Arrays.copyOf(epicIds, capacity);
+        names = Arrays.copyOf(names, capacity);
+        descriptions = Arrays.copyOf(descriptions, capacity);
+    }
+
+    /**
+     * Отсортированный список id подзадач эпика. Id выдаются по возрастанию, поэтому добавление обычно идёт в конец.
+     */
+    private static class Children {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                size--;
+            }
+        }
+    }
+
+    /**
+     * Пул строк со счётчиком ссылок: одинаковые названия и описания хранятся один раз,
+     * а освободившиеся номера переиспользуются.
+     */
+    private static class StringPool {
+        private static final int NULL_REF = -1;
+
+        private final Map<String, Integer> refs = new HashMap<>();
+        private String[] values = new String[INITIAL_CAPACITY];
+        private int[] counts = new int[INITIAL_CAPACITY];
+        private int[] free = new int[INITIAL_CAPACITY];
+        private int freeSize;
+        private int next;
+
+        int acquire(String value) {
+            if (value == null) {
+                return NULL_REF;
+            }
+            Integer ref = refs.get(value);
+            if (ref != null) {
+                counts[ref]++;
+                return ref;
+            }
+            int newRef;
+            if (freeSize > 0) {
+                newRef = free[--freeSize];
+            } else {
+                if (next == values.length) {
+                    values = Arrays.copyOf(values, next * 2);
+                    counts = Arrays.copyOf(counts, next * 2);
+                }
+                newRef = next++;
+            }
+            values[newRef] = value;
+            counts[newRef] = 1;
+            refs.put(value, newRef);
+            return newRef;
+        }
+
+        void release(int ref) {
+            if (ref == NULL_REF || --counts[ref] > 0) {
+                return;
+            }
+            refs.remove(values[ref]);
+            values[ref] = null;
+            if (freeSize == free.length) {
+                free = Arrays.copyOf(free, freeSize * 2);
+            }
+            free[freeSize++] = ref;
+        }
+
+        String get(int ref) {
+            return ref == NULL_REF ? null : values[ref];
+        }
+    }
+}
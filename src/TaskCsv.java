@@ -0,0 +1,706 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+
+/**
+ * CSV-представление задач для снимка и журнала: {@code id,type,name,status,description,duration,startTime,epic}.
+ * <p>
+ * Название и описание берутся в кавычки, только если содержат запятую, кавычку или перевод строки
+ * (кавычка внутри удваивается), а также если равны строке {@code null}: голое {@code null} означает отсутствие значения.
+ * Поэтому файлы, записанные до появления кавычек, читаются без изменений: кавычка открывает значение только
+ * в начале поля, а кавычка в середине голого значения (например, {@code Monitor 27"}) остаётся его частью.
+ * <p>
+ * {@link Writer} форматирует строки в переиспользуемый буфер символов и кодирует его в UTF-8 кусками,
+ * {@link Reader} разбирает поля прямо в буфере байт: числа, статус и время читаются без промежуточных строк,
+ * а объекты {@link String} создаются только для названия и описания.
+ */
+class TaskCsv {
+    static final String HEADER = "id,type,name,status,description,duration,startTime,epic";
+
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+
+    // Состояния разбора записи: начало поля, голое значение, внутри кавычек, кавычка внутри кавычек
+    private static final int FIELD_START = 0;
+    private static final int BARE = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_IN_QUOTED = 3;
+    private static final int STATES = 4;
+
+    private TaskCsv() {
+    }
+
+    /**
+     * Строка журнала {@code <operation>,<задача>} без перевода строки.
+     */
+    static String record(String operation, Task task) {
+        StringBuilder out = new StringBuilder(96);
+        out.append(operation).append(',');
+        appendRow(task, out);
+        return out.toString();
+    }
+
+    static void appendRow(Task task, StringBuilder out) {
+        out.append(task.getId()).append(',');
+        out.append(task instanceof Epic ? "EPIC" : task instanceof Subtask ? "SUBTASK" : "TASK").append(',');
+        appendString(task.getName(), out);
+        out.append(',');
+        out.append(task.getStatus() == null ? "null" : task.getStatus().name()).append(',');
+        appendString(task.getDescription(), out);
+        out.append(',');
+        out.append(task.getDuration() == null ? 0 : task.getDuration().toMinutes()).append(',');
+        appendTime(task.getStartTime(), out);
+        out.append(',');
+        out.append(task instanceof Subtask ? ((Subtask) task).getEpicId() : 0);
+    }
+
+    private static void appendString(String value, StringBuilder out) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        boolean quote = value.equals("null");
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    /**
+     * Пишет время так же, как {@link LocalDateTime#toString()}, но без промежуточных строк.
+     */
+    static void appendTime(LocalDateTime time, StringBuilder out) {
+        if (time == null) {
+            out.append("null");
+            return;
+        }
+        int year = time.getYear();
+        if (year < 0 || year > 9999) {
+            out.append(time);
+            return;
+        }
+        appendDigits(year, 4, out);
+        out.append('-');
+        appendDigits(time.getMonthValue(), 2, out);
+        out.append('-');
+        appendDigits(time.getDayOfMonth(), 2, out);
+        out.append('T');
+        appendDigits(time.getHour(), 2, out);
+        out.append(':');
+        appendDigits(time.getMinute(), 2, out);
+        int second = time.getSecond();
+        int nano = time.getNano();
+        if (second > 0 || nano > 0) {
+            out.append(':');
+            appendDigits(second, 2, out);
+            if (nano > 0) {
+                out.append('.');
+                if (nano % 1_000_000 == 0) {
+                    appendDigits(nano / 1_000_000, 3, out);
+                } else if (nano % 1000 == 0) {
+                    appendDigits(nano / 1000, 6, out);
+                } else {
+                    appendDigits(nano, 9, out);
+                }
+            }
+        }
+    }
+
+    private static void appendDigits(int value, int width, StringBuilder out) {
+        for (int divisor = pow10(width - 1); divisor > 0; divisor /= 10) {
+            out.append((char) ('0' + value / divisor % 10));
+        }
+    }
+
+    private static int pow10(int exponent) {
+        int result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+
+    /**
+     * Разбирает снимок, целиком загруженный в {@code bytes}, параллельно в {@code pool} и возвращает задачи
+     * в порядке файла, без заголовка.
+     * <p>
+     * Файл режется на куски по {@code chunkSize} байт, и каждый кусок разбирается отдельной задачей с первой записи,
+     * начинающейся в нём. Перевод строки внутри кавычек не является границей записи, а открывает ли кавычка
+     * значение, зависит от предыдущего байта, поэтому сначала каждый кусок параллельно прогоняет разбор
+     * из всех {@value #STATES} состояний сразу и считает переводы строк. Последовательная свёртка этих переходов
+     * даёт каждому куску состояние разбора в его начале и номер строки файла, с которой он начинается.
+     * При ошибках разбора выбрасывается первая по порядку файла, как и при последовательном чтении.
+     */
+    static List<Task> parseSnapshot(byte[] bytes, ForkJoinPool pool, int chunkSize) {
+        int chunks = Math.max(1, (int) ((bytes.length + (long) chunkSize - 1) / chunkSize));
+        int[][] exits = new int[chunks][];
+        int[] newlines = new int[chunks];
+        pool.invoke(forEachChunk(chunks, chunk -> {
+            int[] states = {FIELD_START, BARE, QUOTED, QUOTE_IN_QUOTED};
+            int newlineCount = 0;
+            for (int i = chunkStart(chunk, chunkSize, bytes.length), end = chunkStart(chunk + 1, chunkSize, bytes.length); i < end; i++) {
+                byte b = bytes[i];
+                for (int s = 0; s < STATES; s++) {
+                    states[s] = step(states[s], b);
+                }
+                if (b == '\n') {
+                    newlineCount++;
+                }
+            }
+            exits[chunk] = states;
+            newlines[chunk] = newlineCount;
+        }));
+
+        int[] stateAtStart = new int[chunks + 1];
+        long[] linesBefore = new long[chunks + 1];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            stateAtStart[chunk + 1] = exits[chunk][stateAtStart[chunk]];
+            linesBefore[chunk + 1] = linesBefore[chunk] + newlines[chunk];
+        }
+
+        List<List<Task>> parsed = new ArrayList<>(Collections.nCopies(chunks, null));
+        RuntimeException[] failures = new RuntimeException[chunks];
+        pool.invoke(forEachChunk(chunks, chunk -> {
+            int from = chunkStart(chunk, chunkSize, bytes.length);
+            int start = chunk == 0 ? 0 : recordStart(bytes, from, stateAtStart[chunk]);
+            int end = chunk + 1 == chunks ? bytes.length
+                    : recordStart(bytes, chunkStart(chunk + 1, chunkSize, bytes.length), stateAtStart[chunk + 1]);
+            List<Task> tasks = new ArrayList<>();
+            try {
+                if (start < end) {
+                    Reader reader = new Reader(bytes, start, end, 1 + linesBefore[chunk] + countNewlines(bytes, from, start));
+                    if (chunk == 0) {
+                        reader.next(); // Пропустить заголовок
+                    }
+                    while (reader.next()) {
+                        tasks.add(reader.task(0));
+                    }
+                }
+            } catch (RuntimeException e) {
+                failures[chunk] = e;
+            } catch (IOException e) {
+                // Диапазон уже в памяти, канал не читается
+                failures[chunk] = new UncheckedIOException(e);
+            }
+            parsed.set(chunk, tasks);
+        }));
+
+        int size = 0;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            if (failures[chunk] != null) {
+                throw failures[chunk];
+            }
+            size += parsed.get(chunk).size();
+        }
+        List<Task> all = new ArrayList<>(size);
+        for (List<Task> tasks : parsed) {
+            all.addAll(tasks);
+        }
+        return all;
+    }
+
+    private static ForkJoinTask<?> forEachChunk(int chunks, IntConsumer body) {
+        return ForkJoinTask.adapt(() -> {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(chunks);
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                int index = chunk;
+                tasks.add(ForkJoinTask.adapt(() -> body.accept(index)));
+            }
+            ForkJoinTask.invokeAll(tasks);
+        });
+    }
+
+    private static int chunkStart(int chunk, int chunkSize, int length) {
+        return (int) Math.min((long) chunk * chunkSize, length);
+    }
+
+    /**
+     * Начало первой записи не раньше {@code from}, то есть позиция после первого перевода строки вне кавычек;
+     * {@code state} — состояние разбора в позиции {@code from}.
+     */
+    private static int recordStart(byte[] bytes, int from, int state) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == '\n' && state != QUOTED) {
+                return i + 1;
+            }
+            state = step(state, bytes[i]);
+        }
+        return bytes.length;
+    }
+
+    /**
+     * Состояние разбора после байта {@code b}. Кавычка открывает значение только в начале поля, удвоенная кавычка
+     * внутри кавычек остаётся в значении, а перевод строки вне кавычек начинает новую запись.
+     */
+    private static int step(int state, byte b) {
+        if (state == QUOTED) {
+            return b == '"' ? QUOTE_IN_QUOTED : QUOTED;
+        }
+        if (b == '"') {
+            return state == FIELD_START || state == QUOTE_IN_QUOTED ? QUOTED : BARE;
+        }
+        return b == ',' || b == '\n' ? FIELD_START : BARE;
+    }
+
+    private static int countNewlines(byte[] bytes, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Пишет заголовок и строки задач в канал. Строки копятся в буфере символов и кодируются в UTF-8
+     * переиспользуемым кодировщиком, когда буфер заполнится; буферы живут вместе с объектом,
+     * так что один {@code Writer} можно использовать для многих снимков подряд, но не из нескольких потоков.
+     */
+    static class Writer {
+        private static final int CHUNK = 32 * 1024;
+
+        private final StringBuilder text = new StringBuilder(CHUNK + 256);
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(64 * 1024);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private char[] chars = new char[CHUNK + 256];
+        private WritableByteChannel channel;
+        private long written;
+
+        /**
+         * Начинает новый снимок в {@code channel} и пишет заголовок.
+         */
+        Writer open(WritableByteChannel channel) {
+            this.channel = channel;
+            text.setLength(0);
+            bytes.clear();
+            written = 0;
+            text.append(HEADER).append('\n');
+            return this;
+        }
+
+        void write(Task task) throws IOException {
+            appendRow(task, text);
+            text.append('\n');
+            if (text.length() >= CHUNK) {
+                drain();
+            }
+        }
+
+        /**
+         * Дописывает остаток буфера в канал и возвращает число байт снимка. Канал не закрывается.
+         */
+        long finish() throws IOException {
+            drain();
+            writeBytes();
+            channel = null;
+            return written;
+        }
+
+        private void drain() throws IOException {
+            int length = text.length();
+            if (chars.length < length) {
+                chars = new char[length];
+            }
+            text.getChars(0, length, chars, 0);
+            text.setLength(0);
+            // Буфер всегда заканчивается переводом строки, поэтому суррогатная пара не разрывается
+            CharBuffer in = CharBuffer.wrap(chars, 0, length);
+            encoder.reset();
+            while (encoder.encode(in, bytes, true).isOverflow()) {
+                writeBytes();
+            }
+            while (encoder.flush(bytes).isOverflow()) {
+                writeBytes();
+            }
+        }
+
+        private void writeBytes() throws IOException {
+            bytes.flip();
+            writeFully();
+        }
+
+        private void writeFully() throws IOException {
+            written += bytes.remaining();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            bytes.clear();
+        }
+    }
+
+    /**
+     * Читает записи CSV из канала. {@link #next()} находит следующую запись и запоминает границы её полей
+     * в буфере, а методы доступа разбирают поле по номеру на месте. Перевод строки внутри кавычек
+     * относится к полю, пустые строки пропускаются.
+     */
+    static class Reader {
+        private static final int INITIAL_CAPACITY = 64 * 1024;
+        private static final int MAX_FIELDS = 16;
+
+        private final ReadableByteChannel channel;
+        private byte[] buffer;
+        private ByteBuffer view;
+        private int limit;
+        private int position;
+        private boolean eof;
+        private final int[] starts = new int[MAX_FIELDS];
+        private final int[] ends = new int[MAX_FIELDS];
+        private final boolean[] quoted = new boolean[MAX_FIELDS];
+        private int fieldCount;
+        private long line;
+        private long nextLine = 1;
+        private byte[] scratch = new byte[256];
+
+        Reader(ReadableByteChannel channel) {
+            this.channel = channel;
+            this.buffer = new byte[INITIAL_CAPACITY];
+            this.view = ByteBuffer.wrap(buffer);
+        }
+
+        /**
+         * Читает записи из уже загруженного диапазона {@code [from, to)}; {@code firstLine} — номер строки файла,
+         * с которой начинается диапазон, для сообщений об ошибках.
+         */
+        Reader(byte[] bytes, int from, int to, long firstLine) {
+            this.channel = null;
+            this.buffer = bytes;
+            this.view = null;
+            this.position = from;
+            this.limit = to;
+            this.eof = true;
+            this.nextLine = firstLine;
+        }
+
+        /**
+         * Переходит к следующей непустой записи; {@code false}, если записей больше нет.
+         */
+        boolean next() throws IOException {
+            while (true) {
+                int end = scan();
+                if (end < 0) {
+                    if (eof) {
+                        if (position == limit) {
+                            return false;
+                        }
+                        throw error("незакрытые кавычки");
+                    }
+                    fill();
+                    continue;
+                }
+                line = nextLine;
+                nextLine += lines(position, end);
+                int recordEnd = end > position && buffer[end - 1] == '\r' ? end - 1 : end;
+                boolean empty = recordEnd == position;
+                if (!empty) {
+                    split(position, recordEnd);
+                }
+                position = Math.min(end + 1, limit);
+                if (!empty) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Номер строки файла, с которой начинается текущая запись, начиная с 1.
+         */
+        long line() {
+            return line;
+        }
+
+        int fieldCount() {
+            return fieldCount;
+        }
+
+        boolean fieldEquals(int field, String ascii) {
+            checkField(field);
+            int start = starts[field];
+            int length = ends[field] - start;
+            if (quoted[field] || length != ascii.length()) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (buffer[start + i] != ascii.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Строковое значение поля; для голого {@code null} — {@code null}.
+         */
+        String string(int field) {
+            checkField(field);
+            int start = starts[field];
+            int end = ends[field];
+            if (!quoted[field]) {
+                return fieldEquals(field, "null") ? null : new String(buffer, start, end - start, StandardCharsets.UTF_8);
+            }
+            int length = 0;
+            if (scratch.length < end - start) {
+                scratch = new byte[end - start];
+            }
+            for (int i = start; i < end; i++) {
+                scratch[length++] = buffer[i];
+                if (buffer[i] == '"') {
+                    i++;
+                }
+            }
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        long longValue(int field) {
+            checkField(field);
+            int start = starts[field];
+            int end = ends[field];
+            boolean negative = start < end && buffer[start] == '-';
+            int i = negative ? start + 1 : start;
+            if (quoted[field] || i == end || end - i > 18) {
+                throw error("поле " + (field + 1) + " должно быть целым числом");
+            }
+            long value = 0;
+            for (; i < end; i++) {
+                int digit = buffer[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    throw error("поле " + (field + 1) + " должно быть целым числом");
+                }
+                value = value * 10 + digit;
+            }
+            return negative ? -value : value;
+        }
+
+        int intValue(int field) {
+            long value = longValue(field);
+            if (value != (int) value) {
+                throw error("поле " + (field + 1) + " вне диапазона int");
+            }
+            return (int) value;
+        }
+
+        TaskStatus status(int field) {
+            if (fieldEquals(field, "null")) {
+                return null;
+            }
+            for (TaskStatus status : STATUSES) {
+                if (fieldEquals(field, status.name())) {
+                    return status;
+                }
+            }
+            throw error("неизвестный статус задачи " + string(field));
+        }
+
+        /**
+         * Время в формате {@link LocalDateTime#toString()}; частый случай с четырёхзначным годом
+         * разбирается без создания строки.
+         */
+        LocalDateTime time(int field) {
+            if (fieldEquals(field, "null")) {
+                return null;
+            }
+            int start = starts[field];
+            int length = ends[field] - start;
+            if (!quoted[field] && length >= 16 && buffer[start + 4] == '-' && buffer[start + 7] == '-'
+                    && buffer[start + 10] == 'T' && buffer[start + 13] == ':') {
+                int year = digits(start, 4);
+                int month = digits(start + 5, 2);
+                int day = digits(start + 8, 2);
+                int hour = digits(start + 11, 2);
+                int minute = digits(start + 14, 2);
+                int second = 0;
+                int nano = 0;
+                boolean valid = year >= 0 && month >= 0 && day >= 0 && hour >= 0 && minute >= 0;
+                if (valid && length > 16) {
+                    valid = length >= 19 && buffer[start + 16] == ':' && (second = digits(start + 17, 2)) >= 0;
+                    if (valid && length > 19) {
+                        int fraction = length - 20;
+                        valid = buffer[start + 19] == '.' && fraction >= 1 && fraction <= 9
+                                && (nano = digits(start + 20, fraction)) >= 0;
+                        nano *= pow10(9 - fraction);
+                    }
+                }
+                if (valid) {
+                    try {
+                        return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+                    } catch (DateTimeException e) {
+                        throw error("некорректное время начала " + string(field));
+                    }
+                }
+            }
+            String value = string(field);
+            try {
+                return LocalDateTime.parse(value);
+            } catch (DateTimeException e) {
+                throw error("некорректное время начала " + value);
+            }
+        }
+
+        /**
+         * Задача из восьми полей, начиная с поля {@code first}.
+         */
+        Task task(int first) {
+            if (fieldCount - first < 7) {
+                throw error("ожидалось не меньше 7 полей задачи, найдено " + (fieldCount - first));
+            }
+            int id = intValue(first);
+            String name = string(first + 2);
+            TaskStatus status = status(first + 3);
+            String description = string(first + 4);
+            if (fieldEquals(first + 1, "EPIC")) {
+                return new Epic(name, description, id, status);
+            }
+            Duration duration = Duration.ofMinutes(longValue(first + 5));
+            LocalDateTime startTime = time(first + 6);
+            if (fieldEquals(first + 1, "TASK")) {
+                return new Task(name, description, id, status, duration, startTime);
+            } else if (fieldEquals(first + 1, "SUBTASK")) {
+                int epicId = fieldCount - first > 7 ? intValue(first + 7) : 0;
+                return new Subtask(name, description, id, status, epicId, duration, startTime);
+            }
+            throw error("неизвестный тип задачи " + string(first + 1));
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Строка " + line + ": " + message);
+        }
+
+        private void checkField(int field) {
+            if (field >= fieldCount) {
+                throw error("ожидалось не меньше " + (field + 1) + " полей, найдено " + fieldCount);
+            }
+        }
+
+        private int digits(int start, int count) {
+            int value = 0;
+            for (int i = start; i < start + count; i++) {
+                int digit = buffer[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return -1;
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        /**
+         * Индекс перевода строки, завершающего запись с {@link #position}, вне кавычек; в конце файла — {@link #limit}.
+         * -1, если запись ещё не прочитана целиком.
+         */
+        private int scan() {
+            int state = FIELD_START;
+            for (int i = position; i < limit; i++) {
+                byte b = buffer[i];
+                if (b == '\n' && state != QUOTED) {
+                    return i;
+                }
+                state = step(state, b);
+            }
+            return eof && state != QUOTED && position < limit ? limit : -1;
+        }
+
+        private void split(int from, int to) {
+            fieldCount = 0;
+            int i = from;
+            while (true) {
+                if (fieldCount == MAX_FIELDS) {
+                    throw error("слишком много полей");
+                }
+                int field = fieldCount++;
+                if (i < to && buffer[i] == '"') {
+                    int start = ++i;
+                    while (true) {
+                        if (i >= to) {
+                            throw error("незакрытые кавычки");
+                        }
+                        if (buffer[i] == '"') {
+                            if (i + 1 < to && buffer[i + 1] == '"') {
+                                i += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        i++;
+                    }
+                    starts[field] = start;
+                    ends[field] = i++;
+                    quoted[field] = true;
+                    if (i < to && buffer[i] != ',') {
+                        throw error("после закрывающей кавычки ожидалась запятая");
+                    }
+                } else {
+                    int start = i;
+                    while (i < to && buffer[i] != ',') {
+                        i++;
+                    }
+                    starts[field] = start;
+                    ends[field] = i;
+                    quoted[field] = false;
+                }
+                if (i >= to) {
+                    return;
+                }
+                i++;
+            }
+        }
+
+        private int lines(int from, int to) {
+            int count = 1;
+            for (int i = from; i < to; i++) {
+                if (buffer[i] == '\n') {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private void fill() throws IOException {
+            if (position > 0) {
+                System.arraycopy(buffer, position, buffer, 0, limit - position);
+                limit -= position;
+                position = 0;
+            }
+            if (limit == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                view = ByteBuffer.wrap(buffer);
+            }
+            view.limit(buffer.length).position(limit);
+            int read = channel.read(view);
+            if (read < 0) {
+                eof = true;
+            } else {
+                limit += read;
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Событие изменения менеджера задач. Для {@link Type#DELETED} задача — удалённый объект,
+ * для {@link Type#EPIC_CHANGED} — эпик, у которого могли измениться статус, длительность или время.
+ * Менеджеры, которые хранят переданные им объекты, отдают в событии сам объект, поэтому к моменту
+ * доставки его поля могут отражать более поздние изменения.
+ */
+public class TaskEvent {
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED,
+        EPIC_CHANGED
+    }
+
+    private final Type type;
+    private final Task task;
+
+    public TaskEvent(Type type, Task task) {
+        this.type = type;
+        this.task = task;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Task getTask() {
+        return task;
+    }
+
+    public int getId() {
+        return task.getId();
+    }
+
+    @Override
+    public String toString() {
+        return "TaskEvent{" +
+                "type=" + type +
+                ", id=" + task.getId() +
+                '}';
+    }
+}
@@ -0,0 +1,194 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Асинхронная доставка событий менеджера задач подписчикам.
+ * <p>
+ * Публикация не блокирует изменяющий поток: события кладутся в ограниченную очередь каждого подписчика,
+ * а доставка идёт в общем пуле потоков. Для одного подписчика в пуле одновременно работает не больше одной
+ * задачи доставки, поэтому вызовы последовательны и сохраняют порядок публикации, а накопившиеся события
+ * отдаются пачками до {@value #MAX_BATCH}. Если подписчик не успевает и очередь заполнена, новые события
+ * для него отбрасываются, а после доставки оставшихся он получает {@link TaskListener#onOverflow(int)}.
+ * Исключения слушателя передаются в {@link TaskListener#onError(Throwable)} и не останавливают доставку.
+ * Пока подписчиков нет, публикация ничего не стоит.
+ */
+public class TaskEventBus {
+    public static final int DEFAULT_CAPACITY = 10_000;
+    private static final int MAX_BATCH = 1_000;
+    private static final ExecutorService DELIVERY = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "task-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<Subscriber> subscribers;
+    private final Executor executor;
+
+    public TaskEventBus() {
+        this(DELIVERY);
+    }
+
+    TaskEventBus(Executor executor) {
+        this.subscribers = new CopyOnWriteArrayList<>();
+        this.executor = executor;
+    }
+
+    public Subscription subscribe(TaskListener listener) {
+        return subscribe(listener, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Подписывает слушателя с очередью на {@code capacity} недоставленных событий.
+     */
+    public Subscription subscribe(TaskListener listener, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Размер очереди подписчика должен быть положительным");
+        }
+        Subscriber subscriber = new Subscriber(listener, capacity);
+        subscribers.add(subscriber);
+        return subscriber;
+    }
+
+    boolean hasSubscribers() {
+        return !subscribers.isEmpty();
+    }
+
+    void publish(TaskEvent.Type type, Task task) {
+        if (hasSubscribers()) {
+            publish(List.of(new TaskEvent(type, task)));
+        }
+    }
+
+    /**
+     * Публикует события одного изменения: в очередь подписчика они попадают подряд, без событий других изменений между ними.
+     */
+    void publish(List<TaskEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(events);
+        }
+    }
+
+    public interface Subscription extends AutoCloseable {
+        /**
+         * Отписывает слушателя; недоставленные события отбрасываются.
+         */
+        @Override
+        void close();
+    }
+
+    private class Subscriber implements Subscription, Runnable {
+        private final TaskListener listener;
+        private final int capacity;
+        private final ArrayDeque<TaskEvent> queue;
+        private int dropped;
+        private boolean scheduled;
+        private boolean closed;
+
+        Subscriber(TaskListener listener, int capacity) {
+            this.listener = listener;
+            this.capacity = capacity;
+            this.queue = new ArrayDeque<>();
+        }
+
+        synchronized void offer(List<TaskEvent> events) {
+            if (closed) {
+                return;
+            }
+            if (queue.size() + events.size() > capacity) {
+                dropped += events.size();
+            } else {
+                queue.addAll(events);
+            }
+            if (!scheduled) {
+                scheduled = true;
+                try {
+                    executor.execute(this);
+                } catch (RuntimeException e) {
+                    // События остаются в очереди, следующая публикация снова попробует запланировать доставку
+                    scheduled = false;
+                    report(e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            boolean finished = false;
+            try {
+                deliver();
+                finished = true;
+            } finally {
+                if (!finished) {
+                    synchronized (this) {
+                        scheduled = false;
+                    }
+                }
+            }
+        }
+
+        private void deliver() {
+            while (true) {
+                List<TaskEvent> batch;
+                int lost = 0;
+                synchronized (this) {
+                    batch = new ArrayList<>(Math.min(queue.size(), MAX_BATCH));
+                    while (batch.size() < MAX_BATCH && !queue.isEmpty()) {
+                        batch.add(queue.poll());
+                    }
+                    if (queue.isEmpty()) {
+                        lost = dropped;
+                        dropped = 0;
+                    }
+                    if (closed || batch.isEmpty() && lost == 0) {
+                        scheduled = false;
+                        return;
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    try {
+                        listener.onEvents(batch);
+                    } catch (Throwable e) {
+                        report(e);
+                    }
+                }
+                if (lost > 0) {
+                    try {
+                        listener.onOverflow(lost);
+                    } catch (Throwable e) {
+                        report(e);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Передаёт ошибку слушателю, а если упал и {@link TaskListener#onError}, — обработчику необработанных исключений.
+         */
+        private void report(Throwable error) {
+            try {
+                listener.onError(error);
+            } catch (Throwable secondary) {
+                if (secondary != error) {
+                    error.addSuppressed(secondary);
+                }
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, error);
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+            queue.clear();
+            subscribers.remove(this);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Журнал изменений: по одной записи CSV ({@link TaskCsv}) на каждую операцию, только дозапись в конец файла.
+ */
+class TaskJournal {
+    private final File file;
+    private int size;
+
+    TaskJournal(File file) {
+        this.file = file;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    boolean exists() {
+        return file.exists();
+    }
+
+    /**
+     * Количество записей, добавленных с момента последнего сжатия или чтения журнала.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Дописывает пачку записей одной операцией записи; при {@code sync} дожидается сброса данных на диск.
+     * Возвращает число записанных байт.
+     */
+    int appendAll(List<String> records, boolean sync) {
+        StringBuilder builder = new StringBuilder();
+        for (String record : records) {
+            builder.append(record).append('\n');
+        }
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(CharBuffer.wrap(builder));
+        int bytes = buffer.remaining();
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (sync) {
+                channel.force(false);
+            }
+            size += records.size();
+            return bytes;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи в журнал изменений", e);
+        }
+    }
+
+    /**
+     * Передаёт {@code consumer} записи журнала по порядку; запись разбирается на месте и действительна только до возврата.
+     */
+    void replay(Consumer<TaskCsv.Reader> consumer) {
+        if (!file.exists()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            TaskCsv.Reader reader = new TaskCsv.Reader(channel);
+            while (reader.next()) {
+                consumer.accept(reader);
+                size++;
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка чтения журнала изменений", e);
+        }
+    }
+
+    void reset() {
+        try {
+            Files.deleteIfExists(file.toPath());
+            size = 0;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка очистки журнала изменений", e);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON-представление задач без рефлексии и сторонних библиотек: запись идёт прямо в {@link StringBuilder},
+ * а разбор понимает плоский объект задачи и пропускает неизвестные и вложенные поля.
+ * <p>
+ * Поля: id, name, description, status, duration (минуты), startTime и endTime (ISO-8601 или null),
+ * epicId у подзадачи и subtaskIds у эпика. endTime и subtaskIds при разборе игнорируются.
+ */
+class TaskJson {
+    private TaskJson() {
+    }
+
+    static String toJson(Task task) {
+        StringBuilder out = new StringBuilder(160);
+        write(task, out);
+        return out.toString();
+    }
+
+    static String toJson(List<? extends Task> tasks) {
+        StringBuilder out = new StringBuilder(2 + tasks.size() * 160);
+        out.append('[');
+        for (int i = 0; i < tasks.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            write(tasks.get(i), out);
+        }
+        return out.append(']').toString();
+    }
+
+    static void write(Task task, StringBuilder out) {
+        out.append("{\"id\":").append(task.getId());
+        out.append(",\"type\":\"").append(task instanceof Epic ? "EPIC" : task instanceof Subtask ? "SUBTASK" : "TASK").append('"');
+        out.append(",\"name\":");
+        writeString(task.getName(), out);
+        out.append(",\"description\":");
+        writeString(task.getDescription(), out);
+        out.append(",\"status\":");
+        writeString(task.getStatus() == null ? null : task.getStatus().name(), out);
+        out.append(",\"duration\":").append(task.getDuration() == null ? 0 : task.getDuration().toMinutes());
+        LocalDateTime startTime = task.getStartTime();
+        out.append(",\"startTime\":");
+        writeString(startTime == null ? null : startTime.toString(), out);
+        out.append(",\"endTime\":");
+        writeString(startTime == null ? null : task.getEndTime().toString(), out);
+        if (task instanceof Subtask) {
+            out.append(",\"epicId\":").append(((Subtask) task).getEpicId());
+        } else if (task instanceof Epic) {
+            out.append(",\"subtaskIds\":[");
+            List<Subtask> subtasks = ((Epic) task).getSubtasks();
+            for (int i = 0; i < subtasks.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append(subtasks.get(i).getId());
+            }
+            out.append(']');
+        }
+        out.append('}');
+    }
+
+    static void writeString(String value, StringBuilder out) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    static Task parseTask(String json) {
+        return toTask(new Reader(json).readObject(), Task.class);
+    }
+
+    static Epic parseEpic(String json) {
+        return (Epic) toTask(new Reader(json).readObject(), Epic.class);
+    }
+
+    static Subtask parseSubtask(String json) {
+        return (Subtask) toTask(new Reader(json).readObject(), Subtask.class);
+    }
+
+    /**
+     * Собирает задачу нужного типа из полей объекта. Отсутствующий id считается нулевым, статус — NEW.
+     */
+    static Task toTask(Map<String, Object> fields, Class<? extends Task> type) {
+        int id = (int) number(fields, "id", 0);
+        String name = string(fields, "name");
+        String description = string(fields, "description");
+        String statusName = string(fields, "status");
+        TaskStatus status;
+        try {
+            status = statusName == null ? TaskStatus.NEW : TaskStatus.valueOf(statusName);
+        } catch (IllegalArgumentException e) {
+            throw new MalformedJsonException("Неизвестный статус задачи: " + statusName);
+        }
+        if (type == Epic.class) {
+            return new Epic(name, description, id, status);
+        }
+        Duration duration = Duration.ofMinutes(number(fields, "duration", 0));
+        String start = string(fields, "startTime");
+        LocalDateTime startTime;
+        try {
+            startTime = start == null ? null : LocalDateTime.parse(start);
+        } catch (RuntimeException e) {
+            throw new MalformedJsonException("Некорректное время начала: " + start);
+        }
+        if (type == Subtask.class) {
+            if (!fields.containsKey("epicId")) {
+                throw new MalformedJsonException("У подзадачи не указан epicId");
+            }
+            return new Subtask(name, description, id, status, (int) number(fields, "epicId", 0), duration, startTime);
+        }
+        return new Task(name, description, id, status, duration, startTime);
+    }
+
+    private static String string(Map<String, Object> fields, String key) {
+        Object value = fields.get(key);
+        if (value != null && !(value instanceof String)) {
+            throw new MalformedJsonException("Поле " + key + " должно быть строкой");
+        }
+        return (String) value;
+    }
+
+    private static long number(Map<String, Object> fields, String key, long defaultValue) {
+        Object value = fields.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Long)) {
+            throw new MalformedJsonException("Поле " + key + " должно быть целым числом");
+        }
+        return (Long) value;
+    }
+
+    static class MalformedJsonException extends RuntimeException {
+        MalformedJsonException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Разбор одного JSON-объекта. Значения верхнего уровня — String, Long, Boolean или null;
+     * вложенные объекты, массивы и дробные числа пропускаются и в результат не попадают.
+     */
+    static class Reader {
+        private static final Object SKIPPED = new Object();
+
+        private final String json;
+        private int pos;
+
+        Reader(String json) {
+            this.json = json;
+        }
+
+        Map<String, Object> readObject() {
+            Map<String, Object> fields = new HashMap<>();
+            skipWhitespace();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return finish(fields);
+            }
+            while (true) {
+                skipWhitespace();
+                String key = readString();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                Object value = readValue();
+                if (value != SKIPPED) {
+                    fields.put(key, value);
+                }
+                skipWhitespace();
+                char c = next();
+                if (c == '}') {
+                    return finish(fields);
+                } else if (c != ',') {
+                    throw error("Ожидалась ',' или '}'");
+                }
+            }
+        }
+
+        private Map<String, Object> finish(Map<String, Object> fields) {
+            skipWhitespace();
+            if (pos != json.length()) {
+                throw error("Лишние символы после объекта");
+            }
+            return fields;
+        }
+
+        private Object readValue() {
+            char c = peek();
+            if (c == '"') {
+                return readString();
+            } else if (c == '{' || c == '[') {
+                skipNested();
+                return SKIPPED;
+            } else if (c == '-' || c >= '0' && c <= '9') {
+                return readNumber();
+            } else if (json.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            } else if (json.startsWith("true", pos)) {
+                pos += 4;
+                return Boolean.TRUE;
+            } else if (json.startsWith("false", pos)) {
+                pos += 5;
+                return Boolean.FALSE;
+            }
+            throw error("Неожиданный символ");
+        }
+
+        private Object readNumber() {
+            int start = pos;
+            if (peek() == '-') {
+                pos++;
+            }
+            boolean integral = true;
+            while (pos < json.length()) {
+                char c = json.charAt(pos);
+                if (c >= '0' && c <= '9') {
+                    pos++;
+                } else if (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                    integral = false;
+                    pos++;
+                } else {
+                    break;
+                }
+            }
+            if (!integral) {
+                return SKIPPED;
+            }
+            try {
+                return Long.parseLong(json, start, pos, 10);
+            } catch (NumberFormatException e) {
+                throw error("Некорректное число");
+            }
+        }
+
+        private String readString() {
+            expect('"');
+            StringBuilder value = null;
+            int start = pos;
+            while (true) {
+                if (pos >= json.length()) {
+                    throw error("Незакрытая строка");
+                }
+                char c = json.charAt(pos++);
+                if (c == '"') {
+                    return value == null ? json.substring(start, pos - 1) : value.toString();
+                }
+                if (c != '\\') {
+                    if (value != null) {
+                        value.append(c);
+                    }
+                    continue;
+                }
+                if (value == null) {
+                    value = new StringBuilder(json.substring(start, pos - 1));
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case '"', '\\', '/' -> value.append(escaped);
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'u' -> {
+                        if (pos + 4 > json.length()) {
+                            throw error("Некорректная escape-последовательность");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(json, pos, pos + 4, 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Некорректная escape-последовательность");
+                        }
+                        pos += 4;
+                    }
+                    default -> throw error("Некорректная escape-последовательность");
+                }
+            }
+        }
+
+        private void skipNested() {
+            int depth = 0;
+            do {
+                char c = peek();
+                if (c == '"') {
+                    readString();
+                    continue;
+                }
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+                pos++;
+            } while (depth > 0);
+        }
+
+        private void skipWhitespace() {
+            while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private void expect(char expected) {
+            if (next() != expected) {
+                throw error("Ожидался символ '" + expected + "'");
+            }
+        }
+
+        private char peek() {
+            if (pos >= json.length()) {
+                throw error("Неожиданный конец JSON");
+            }
+            return json.charAt(pos);
+        }
+
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private MalformedJsonException error(String message) {
+            return new MalformedJsonException(message + " в позиции " + pos);
+        }
+    }
+}
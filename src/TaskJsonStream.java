@@ -0,0 +1,221 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Потоковая выгрузка и загрузка всего хранилища в NDJSON: одна задача в формате {@link TaskJson} на строку,
+ * сначала эпики, затем задачи и подзадачи.
+ * <p>
+ * Выгрузка идёт по потокам менеджера прямо в канал через переиспользуемые буферы, загрузка читает канал кусками
+ * и добавляет задачи пачками через {@link TaskManager#addAll}, поэтому память не зависит от размера хранилища.
+ * При загрузке id назначаются заново, связи подзадач с эпиками сохраняются. Подзадача, чьего эпика нет в выгрузке,
+ * остаётся без эпика и не привязывается к эпику менеджера с тем же id.
+ */
+public class TaskJsonStream {
+    static final int BUFFER_SIZE = 64 * 1024;
+    static final int BATCH_SIZE = 1000;
+    static final int MAX_LINE_LENGTH = 1024 * 1024;
+
+    private TaskJsonStream() {
+    }
+
+    /**
+     * @return число выгруженных задач
+     */
+    public static long export(TaskManager manager, WritableByteChannel channel) throws IOException {
+        Writer writer = new Writer(channel);
+        try (Stream<Epic> epics = manager.streamAllEpics();
+             Stream<Task> tasks = manager.streamAllTasks();
+             Stream<Subtask> subtasks = manager.streamAllSubtasks()) {
+            writer.writeAll(epics.iterator());
+            writer.writeAll(tasks.iterator());
+            writer.writeAll(subtasks.iterator());
+        }
+        writer.finish();
+        return writer.count;
+    }
+
+    /**
+     * Добавляет задачи из канала в менеджер. Пустые строки пропускаются.
+     * Если задача пересекается по времени с уже имеющейся, загрузка прерывается,
+     * а добавленные до этого пачки остаются в менеджере.
+     *
+     * @return число загруженных задач
+     */
+    public static long importInto(TaskManager manager, ReadableByteChannel channel) throws IOException {
+        Loader loader = new Loader(manager);
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+        ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        StringBuilder line = new StringBuilder(256);
+        boolean endOfInput = false;
+        while (!endOfInput) {
+            endOfInput = channel.read(bytes) < 0;
+            bytes.flip();
+            CoderResult result = decoder.decode(bytes, chars, endOfInput);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (endOfInput) {
+                decoder.flush(chars);
+            }
+            bytes.compact();
+            chars.flip();
+            while (chars.hasRemaining()) {
+                char c = chars.get();
+                if (c == '\n') {
+                    loader.accept(line);
+                    line.setLength(0);
+                } else if (line.length() == MAX_LINE_LENGTH) {
+                    throw new TaskJson.MalformedJsonException("Строка " + (loader.lineNumber + 1) + " длиннее "
+                            + MAX_LINE_LENGTH + " символов");
+                } else {
+                    line.append(c);
+                }
+            }
+            chars.clear();
+        }
+        loader.accept(line);
+        loader.flush();
+        return loader.count;
+    }
+
+    private static class Writer {
+        private final WritableByteChannel channel;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final StringBuilder chars = new StringBuilder(BUFFER_SIZE);
+        private long count;
+
+        Writer(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void writeAll(Iterator<? extends Task> tasks) throws IOException {
+            while (tasks.hasNext()) {
+                TaskJson.write(tasks.next(), chars);
+                chars.append('\n');
+                count++;
+                if (chars.length() >= BUFFER_SIZE) {
+                    encode(false);
+                }
+            }
+        }
+
+        void finish() throws IOException {
+            encode(true);
+            while (encoder.flush(bytes).isOverflow()) {
+                drain();
+            }
+            drain();
+        }
+
+        private void encode(boolean endOfInput) throws IOException {
+            CharBuffer input = CharBuffer.wrap(chars);
+            while (true) {
+                CoderResult result = encoder.encode(input, bytes, endOfInput);
+                if (result.isError()) {
+                    result.throwException();
+                }
+                if (!result.isOverflow()) {
+                    break;
+                }
+                drain();
+            }
+            // Незакодированный хвост (половина суррогатной пары) переносится в начало буфера.
+            chars.delete(0, input.position());
+        }
+
+        private void drain() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            bytes.clear();
+        }
+    }
+
+    private static class Loader {
+        // Менеджеры выдают id начиная с 1, поэтому 0 не совпадает ни с одним эпиком
+        private static final int NO_EPIC = 0;
+
+        private final TaskManager manager;
+        private final Map<Integer, Integer> epicIds = new HashMap<>();
+        private final List<Task> batch = new ArrayList<>(BATCH_SIZE);
+        private final List<Integer> batchEpicIds = new ArrayList<>();
+        private long lineNumber;
+        private long count;
+
+        Loader(TaskManager manager) {
+            this.manager = manager;
+        }
+
+        void accept(StringBuilder line) {
+            lineNumber++;
+            String json = line.toString();
+            if (json.isBlank()) {
+                return;
+            }
+            Task task;
+            try {
+                Map<String, Object> fields = new TaskJson.Reader(json).readObject();
+                task = TaskJson.toTask(fields, type(fields.get("type")));
+            } catch (TaskJson.MalformedJsonException e) {
+                throw new TaskJson.MalformedJsonException("Строка " + lineNumber + ": " + e.getMessage());
+            }
+            // Эпики и остальные задачи идут разными пачками: addAll сам сопоставляет id эпиков внутри пачки,
+            // а подзадачам здесь уже проставлены новые id эпиков из предыдущих пачек.
+            boolean epic = task instanceof Epic;
+            if (!batch.isEmpty() && (batch.get(0) instanceof Epic) != epic) {
+                flush();
+            }
+            if (epic) {
+                batchEpicIds.add(task.getId());
+            } else if (task instanceof Subtask) {
+                Subtask subtask = (Subtask) task;
+                // Выгрузка пишет все эпики раньше подзадач, поэтому неизвестный id — ссылка подзадачи-сироты
+                subtask.setEpicId(epicIds.getOrDefault(subtask.getEpicId(), NO_EPIC));
+            }
+            batch.add(task);
+            if (batch.size() == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            manager.addAll(batch);
+            for (int i = 0; i < batchEpicIds.size(); i++) {
+                epicIds.put(batchEpicIds.get(i), batch.get(i).getId());
+            }
+            count += batch.size();
+            batch.clear();
+            batchEpicIds.clear();
+        }
+
+        private static Class<? extends Task> type(Object type) {
+            if ("TASK".equals(type)) {
+                return Task.class;
+            } else if ("EPIC".equals(type)) {
+                return Epic.class;
+            } else if ("SUBTASK".equals(type)) {
+                return Subtask.class;
+            }
+            throw new TaskJson.MalformedJsonException("Неизвестный тип задачи: " + type);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+import java.util.List;
+
+/**
+ * Подписчик на события менеджера задач. Вызовы одного подписчика идут последовательно и в порядке публикации,
+ * но не в потоке, изменившем менеджер.
+ */
+public interface TaskListener {
+    /**
+     * Очередная пачка событий, не пустая.
+     */
+    void onEvents(List<TaskEvent> events);
+
+    /**
+     * Очередь подписчика переполнилась, и {@code droppedEvents} событий не были доставлены.
+     * Подписчику, который поддерживает копию состояния, следует перечитать его целиком.
+     */
+    default void onOverflow(int droppedEvents) {
+    }
+
+    /**
+     * Вызов {@link #onEvents} или {@link #onOverflow} этого подписчика завершился исключением {@code error},
+     * либо доставку не удалось запланировать. Доставка следующих событий продолжается.
+     * По умолчанию ошибка передаётся обработчику необработанных исключений текущего потока.
+     */
+    default void onError(Throwable error) {
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, error);
+    }
+}
@@ -1,4 +1,8 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface TaskManager {
     List<Task> getAllTasks();
@@ -7,6 +11,18 @@ public interface TaskManager {
 
     List<Subtask> getAllSubtasks();
 
+    List<Task> getAllTasks(int afterId, int limit);
+
+    List<Epic> getAllEpics(int afterId, int limit);
+
+    List<Subtask> getAllSubtasks(int afterId, int limit);
+
+    Stream<Task> streamAllTasks();
+
+    Stream<Epic> streamAllEpics();
+
+    Stream<Subtask> streamAllSubtasks();
+
     void deleteAllTask();
 
     void deleteAllEpic();
@@ -25,6 +41,8 @@ public interface TaskManager {
 
     void addSubtask(Subtask subtask);
 
+    void addAll(Collection<? extends Task> tasks);
+
     void updateTask(Task task);
 
     void updateEpic(Epic epic);
@@ -42,6 +60,28 @@ public interface TaskManager {
     List<Task> getHistory();
 
     List<Task> getPrioritizedTasks();
+
+    List<Task> getPrioritizedTasks(LocalDateTime afterStartTime, int limit);
+
+    Stream<Task> streamPrioritizedTasks();
+
+    List<Task> getTasksBetween(LocalDateTime from, LocalDateTime to);
+
+    Task nextTaskAfter(LocalDateTime time);
+
+    List<Task> tasksActiveAt(LocalDateTime time);
+
+    LocalDateTime findFreeSlot(LocalDateTime notBefore, Duration duration);
+
+    void scheduleTask(Task task, LocalDateTime notBefore);
+
+    void scheduleAll(Collection<? extends Task> tasks, LocalDateTime notBefore);
+
+    Stream<Task> streamHistory();
+
+    TaskEventBus events();
+
+    TaskSnapshot snapshot();
 }
 
 
@@ -0,0 +1,77 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Реестр метрик менеджера: гистограммы задержек операций, счётчики и показатели, снимаемые при чтении.
+ * Метрики регистрируются один раз, а запись идёт в уже полученные объекты, поэтому не ищет по имени и не выделяет память.
+ * {@link #scrape()} отдаёт все значения в текстовом формате Prometheus.
+ */
+public class TaskMetrics {
+    static final String PREFIX = "task_manager_";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final Map<String, LatencyHistogram> timers = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+
+    /**
+     * Гистограмма задержек операции {@code operation}; повторный вызов с тем же именем возвращает ту же гистограмму.
+     */
+    public LatencyHistogram timer(String operation) {
+        return timers.computeIfAbsent(operation, name -> new LatencyHistogram());
+    }
+
+    /**
+     * Монотонный счётчик; в выгрузке получает суффикс {@code _total}.
+     */
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * Показатель, значение которого вычисляется при каждой выгрузке, например размер хранилища.
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public String scrape() {
+        StringBuilder out = new StringBuilder(256 + timers.size() * 512);
+        if (!timers.isEmpty()) {
+            String summary = PREFIX + "operation_seconds";
+            out.append("# TYPE ").append(summary).append(" summary\n");
+            for (Map.Entry<String, LatencyHistogram> entry : timers.entrySet()) {
+                LatencyHistogram histogram = entry.getValue();
+                for (double quantile : QUANTILES) {
+                    out.append(summary).append("{operation=\"").append(entry.getKey())
+                            .append("\",quantile=\"").append(quantile).append("\"} ")
+                            .append(histogram.getValueAtQuantile(quantile) / NANOS_PER_SECOND).append('\n');
+                }
+                out.append(summary).append("_sum{operation=\"").append(entry.getKey()).append("\"} ")
+                        .append(histogram.getSumNanos() / NANOS_PER_SECOND).append('\n');
+                out.append(summary).append("_count{operation=\"").append(entry.getKey()).append("\"} ")
+                        .append(histogram.getCount()).append('\n');
+            }
+            String max = PREFIX + "operation_max_seconds";
+            out.append("# TYPE ").append(max).append(" gauge\n");
+            for (Map.Entry<String, LatencyHistogram> entry : timers.entrySet()) {
+                out.append(max).append("{operation=\"").append(entry.getKey()).append("\"} ")
+                        .append(entry.getValue().getMaxNanos() / NANOS_PER_SECOND).append('\n');
+            }
+        }
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            String name = PREFIX + entry.getKey() + "_total";
+            out.append("# TYPE ").append(name).append(" counter\n");
+            out.append(name).append(' ').append(entry.getValue().sum()).append('\n');
+        }
+        for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+            String name = PREFIX + entry.getKey();
+            out.append("# TYPE ").append(name).append(" gauge\n");
+            out.append(name).append(' ').append(entry.getValue().getAsLong()).append('\n');
+        }
+        return out.toString();
+    }
+}
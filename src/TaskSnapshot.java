@@ -0,0 +1,183 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Неизменяемое состояние менеджера на момент вызова {@link TaskManager#snapshot()}.
+ * Задачи, эпики и подзадачи берутся из одной версии хранилища, поэтому согласованы между собой,
+ * а последующие изменения менеджера на снимок не влияют. Чтение снимка не блокирует запись и не попадает в историю.
+ * <p>
+ * Значения попадают в версию копиями, поэтому изменение объекта задачи на месте и следующий
+ * {@code update} не затрагивают уже выданные снимки. Чтение тоже отдаёт копии, а эпики собираются
+ * из подзадач этой версии. Индекс подзадач по эпикам строится при первом обращении.
+ */
+public final class TaskSnapshot {
+    private static final TaskSnapshot EMPTY = new TaskSnapshot(PersistentIdMap.empty(), PersistentIdMap.empty(),
+            PersistentIdMap.empty());
+
+    private final PersistentIdMap<Task> tasks;
+    private final PersistentIdMap<Epic> epics;
+    private final PersistentIdMap<Subtask> subtasks;
+    private Map<Integer, List<Subtask>> subtasksByEpic;
+
+    TaskSnapshot(PersistentIdMap<Task> tasks, PersistentIdMap<Epic> epics, PersistentIdMap<Subtask> subtasks) {
+        this.tasks = tasks;
+        this.epics = epics;
+        this.subtasks = subtasks;
+    }
+
+    static TaskSnapshot empty() {
+        return EMPTY;
+    }
+
+    public List<Task> getAllTasks() {
+        return getAllTasks(-1, Integer.MAX_VALUE);
+    }
+
+    public List<Epic> getAllEpics() {
+        return getAllEpics(-1, Integer.MAX_VALUE);
+    }
+
+    public List<Subtask> getAllSubtasks() {
+        return getAllSubtasks(-1, Integer.MAX_VALUE);
+    }
+
+    public List<Task> getAllTasks(int afterId, int limit) {
+        checkLimit(limit);
+        List<Task> page = tasks.page(afterId, limit);
+        page.replaceAll(TaskSnapshot::copyOf);
+        return page;
+    }
+
+    public List<Epic> getAllEpics(int afterId, int limit) {
+        checkLimit(limit);
+        List<Epic> page = epics.page(afterId, limit);
+        page.replaceAll(this::assemble);
+        return page;
+    }
+
+    public List<Subtask> getAllSubtasks(int afterId, int limit) {
+        checkLimit(limit);
+        List<Subtask> page = subtasks.page(afterId, limit);
+        page.replaceAll(TaskSnapshot::copyOf);
+        return page;
+    }
+
+    public Task getTask(int id) {
+        Task task = tasks.get(id);
+        return task == null ? null : copyOf(task);
+    }
+
+    public Epic getEpic(int id) {
+        Epic epic = epics.get(id);
+        return epic == null ? null : assemble(epic);
+    }
+
+    public Subtask getSubtask(int id) {
+        Subtask subtask = subtasks.get(id);
+        return subtask == null ? null : copyOf(subtask);
+    }
+
+    public List<Subtask> getSubtasksOfEpic(int epicId) {
+        if (epics.get(epicId) == null) {
+            return List.of();
+        }
+        List<Subtask> copies = new ArrayList<>(subtasksByEpic().getOrDefault(epicId, List.of()));
+        copies.replaceAll(TaskSnapshot::copyOf);
+        return copies;
+    }
+
+    public int size() {
+        return tasks.size() + epics.size() + subtasks.size();
+    }
+
+    /**
+     * Следующая версия, в которой по id задачи лежит копия её текущих значений;
+     * из хранилищ других типов этот id убирается.
+     */
+    TaskSnapshot with(Task task) {
+        return withOwned(copy(task));
+    }
+
+    /**
+     * То же, что {@link #with(Task)}, но без копирования: объект больше никому не принадлежит и не изменяется.
+     */
+    TaskSnapshot withOwned(Task task) {
+        int id = task.getId();
+        if (task instanceof Epic) {
+            return new TaskSnapshot(tasks.without(id), epics.with(id, (Epic) task), subtasks.without(id));
+        } else if (task instanceof Subtask) {
+            return new TaskSnapshot(tasks.without(id), epics.without(id), subtasks.with(id, (Subtask) task));
+        }
+        return new TaskSnapshot(tasks.with(id, task), epics.without(id), subtasks.without(id));
+    }
+
+    TaskSnapshot without(int id) {
+        return new TaskSnapshot(tasks.without(id), epics.without(id), subtasks.without(id));
+    }
+
+    TaskSnapshot withoutTasks() {
+        return new TaskSnapshot(PersistentIdMap.empty(), epics, subtasks);
+    }
+
+    TaskSnapshot withoutEpics() {
+        return new TaskSnapshot(tasks, PersistentIdMap.empty(), subtasks);
+    }
+
+    TaskSnapshot withoutSubtasks() {
+        return new TaskSnapshot(tasks, epics, PersistentIdMap.empty());
+    }
+
+    /**
+     * Копия значений задачи любого типа. У эпика копируются только собственные поля:
+     * остальное снимок собирает из своих подзадач.
+     */
+    static Task copy(Task task) {
+        if (task instanceof Epic) {
+            return copyOf((Epic) task);
+        } else if (task instanceof Subtask) {
+            return copyOf((Subtask) task);
+        }
+        return copyOf(task);
+    }
+
+    static Task copyOf(Task task) {
+        return new Task(task.getName(), task.getDescription(), task.getId(), task.getStatus(), task.getDuration(),
+                task.getStartTime());
+    }
+
+    static Subtask copyOf(Subtask subtask) {
+        return new Subtask(subtask.getName(), subtask.getDescription(), subtask.getId(), subtask.getStatus(),
+                subtask.getEpicId(), subtask.getDuration(), subtask.getStartTime());
+    }
+
+    static Epic copyOf(Epic epic) {
+        return new Epic(epic.getName(), epic.getDescription(), epic.getId(), TaskStatus.NEW);
+    }
+
+    private Epic assemble(Epic epic) {
+        Epic copy = copyOf(epic);
+        copy.addSubtasks(getSubtasksOfEpic(epic.getId()));
+        return copy;
+    }
+
+    private synchronized Map<Integer, List<Subtask>> subtasksByEpic() {
+        if (subtasksByEpic == null) {
+            Map<Integer, List<Subtask>> index = new HashMap<>();
+            subtasks.forEachFrom(0, subtask -> {
+                index.computeIfAbsent(subtask.getEpicId(), epicId -> new ArrayList<>()).add(subtask);
+                return true;
+            });
+            index.replaceAll((epicId, list) -> List.copyOf(list));
+            subtasksByEpic = index;
+        }
+        return subtasksByEpic;
+    }
+
+    private static void checkLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Размер страницы не может быть отрицательным");
+        }
+    }
+}
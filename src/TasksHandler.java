@@ -0,0 +1,47 @@
+import java.util.List;
+
+class TasksHandler extends EntityHttpHandler<Task> {
+    TasksHandler(TaskManager manager) {
+        super(manager, "tasks");
+    }
+
+    @Override
+    protected List<Task> page(int afterId, int limit) {
+        return manager.getAllTasks(afterId, limit);
+    }
+
+    @Override
+    protected List<Task> all() {
+        return manager.getAllTasks();
+    }
+
+    @Override
+    protected Task get(int id) {
+        return manager.getTask(id);
+    }
+
+    @Override
+    protected Task parse(String body) {
+        return TaskJson.parseTask(body);
+    }
+
+    @Override
+    protected void add(Task task) {
+        manager.addTask(task);
+    }
+
+    @Override
+    protected void update(Task task) {
+        manager.updateTask(task);
+    }
+
+    @Override
+    protected void delete(int id) {
+        manager.deleteTask(id);
+    }
+
+    @Override
+    protected void deleteAll() {
+        manager.deleteAllTask();
+    }
+}
@@ -0,0 +1,244 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Индекс занятых временных слотов задач и подзадач.
+ * <p>
+ * Слоты в индексе никогда не пересекаются, поэтому время начала уникально, а порядок по началу
+ * совпадает с порядком по окончанию. Для проверки пересечения достаточно посмотреть на ближайших
+ * соседей слева и справа, что даёт O(log n) на добавление, обновление и удаление.
+ * Интервалы полуоткрытые: задача, начинающаяся ровно в момент окончания другой, не пересекается с ней.
+ */
+class TimeSlotIndex {
+    private final TreeMap<LocalDateTime, Slot> slotsByStart;
+    private final Map<Integer, Slot> slotsById;
+
+    TimeSlotIndex() {
+        slotsByStart = new TreeMap<>();
+        slotsById = new HashMap<>();
+    }
+
+    /**
+     * Проверяет, свободен ли интервал задачи. Слот с идентификатором {@code ignoredId}
+     * не учитывается, чтобы задача при обновлении не конфликтовала сама с собой.
+     */
+    boolean isFree(Task task, int ignoredId) {
+        if (task.getStartTime() == null) {
+            return true;
+        }
+        return isFree(task.getStartTime(), task.getEndTime(), ignoredId);
+    }
+
+    /**
+     * Свободны ли интервалы всех задач пачки, кроме эпиков, от слотов индекса.
+     */
+    boolean areFree(Collection<? extends Task> tasks) {
+        for (Task task : tasks) {
+            if (!(task instanceof Epic) && !isFree(task, 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean isFree(LocalDateTime start, LocalDateTime end, int ignoredId) {
+        Map.Entry<LocalDateTime, Slot> before = slotsByStart.floorEntry(start);
+        if (before != null && before.getValue().id != ignoredId
+                && (before.getKey().equals(start) || before.getValue().end.isAfter(start))) {
+            return false;
+        }
+        Map.Entry<LocalDateTime, Slot> after = slotsByStart.higherEntry(start);
+        if (after != null && after.getValue().id == ignoredId) {
+            after = slotsByStart.higherEntry(after.getKey());
+        }
+        return after == null || !after.getKey().isBefore(end);
+    }
+
+    /**
+     * Занимает слот задачи. Задачи без времени начала в индекс не попадают.
+     * Предыдущий слот с тем же идентификатором освобождается.
+     */
+    void add(Task task) {
+        remove(task.getId());
+        if (task.getStartTime() == null) {
+            return;
+        }
+        Slot slot = new Slot(task, task.getStartTime(), task.getEndTime());
+        slotsByStart.put(slot.start, slot);
+        slotsById.put(slot.id, slot);
+    }
+
+    void remove(int id) {
+        Slot slot = slotsById.remove(id);
+        if (slot != null) {
+            slotsByStart.remove(slot.start);
+        }
+    }
+
+    Slot get(int id) {
+        return slotsById.get(id);
+    }
+
+    /**
+     * Задачи, которые выполняются хотя бы часть времени в интервале [from, to), в порядке начала.
+     * Работает за O(log n + k): слоты не пересекаются, поэтому до {@code from} может начаться не больше одного из них.
+     */
+    List<Task> between(LocalDateTime from, LocalDateTime to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Начало интервала позже его окончания");
+        }
+        List<Task> result = new ArrayList<>();
+        Map.Entry<LocalDateTime, Slot> before = slotsByStart.lowerEntry(from);
+        if (before != null && before.getValue().end.isAfter(from)) {
+            result.add(before.getValue().task);
+        }
+        for (Slot slot : slotsByStart.subMap(from, true, to, false).values()) {
+            result.add(slot.task);
+        }
+        return result;
+    }
+
+    /**
+     * Ближайшая задача, начинающаяся строго позже {@code time}, или {@code null}.
+     */
+    Task nextAfter(LocalDateTime time) {
+        Map.Entry<LocalDateTime, Slot> next = slotsByStart.higherEntry(time);
+        return next == null ? null : next.getValue().task;
+    }
+
+    /**
+     * Задача, выполняющаяся в момент {@code time}, или {@code null}: слоты не пересекаются, поэтому она не больше одной.
+     */
+    Task activeAt(LocalDateTime time) {
+        Map.Entry<LocalDateTime, Slot> slot = slotsByStart.floorEntry(time);
+        return slot != null && slot.getValue().end.isAfter(time) ? slot.getValue().task : null;
+    }
+
+    /**
+     * Самое раннее время начала не раньше {@code notBefore}, при котором интервал длительностью {@code duration}
+     * ни с чем не пересекается. Обходит промежутки между слотами начиная с {@code notBefore}.
+     */
+    LocalDateTime findFree(LocalDateTime notBefore, Duration duration) {
+        return findFree(slotsByStart, slot -> slot.end, notBefore, duration);
+    }
+
+    /**
+     * Назначает задачам пачки время начала: каждая ставится в самый ранний промежуток не раньше {@code notBefore},
+     * свободный и от слотов индекса, и от уже размещённых задач пачки. Сам индекс не изменяется.
+     */
+    void placeAll(Collection<? extends Task> tasks, LocalDateTime notBefore) {
+        TreeMap<LocalDateTime, LocalDateTime> placed = new TreeMap<>();
+        for (Task task : tasks) {
+            if (task instanceof Epic) {
+                continue;
+            }
+            Duration duration = task.getDuration() == null ? Duration.ZERO : task.getDuration();
+            LocalDateTime candidate = notBefore;
+            while (true) {
+                LocalDateTime free = findFree(candidate, duration);
+                candidate = findFree(placed, end -> end, free, duration);
+                if (candidate.equals(free)) {
+                    break;
+                }
+            }
+            task.setStartTime(candidate);
+            placed.put(candidate, candidate.plus(duration));
+        }
+    }
+
+    /**
+     * Время начала задач пачки по порядку, чтобы вернуть его через {@link #restoreStartTimes}, если пачку не удалось добавить.
+     */
+    static LocalDateTime[] startTimes(Collection<? extends Task> tasks) {
+        LocalDateTime[] startTimes = new LocalDateTime[tasks.size()];
+        int i = 0;
+        for (Task task : tasks) {
+            startTimes[i++] = task.getStartTime();
+        }
+        return startTimes;
+    }
+
+    static void restoreStartTimes(Collection<? extends Task> tasks, LocalDateTime[] startTimes) {
+        int i = 0;
+        for (Task task : tasks) {
+            LocalDateTime startTime = startTimes[i++];
+            if (!(task instanceof Epic)) {
+                task.setStartTime(startTime);
+            }
+        }
+    }
+
+    private static <V> LocalDateTime findFree(NavigableMap<LocalDateTime, V> byStart, Function<V, LocalDateTime> endOf,
+                                              LocalDateTime candidate, Duration duration) {
+        Map.Entry<LocalDateTime, V> covering = byStart.lowerEntry(candidate);
+        if (covering != null && endOf.apply(covering.getValue()).isAfter(candidate)) {
+            candidate = endOf.apply(covering.getValue());
+        }
+        while (true) {
+            Map.Entry<LocalDateTime, V> next = byStart.ceilingEntry(candidate);
+            if (next == null || next.getKey().isAfter(candidate) && !next.getKey().isBefore(candidate.plus(duration))) {
+                return candidate;
+            }
+            LocalDateTime end = endOf.apply(next.getValue());
+            // Слот нулевой длины занимает только своё время начала
+            candidate = end.isAfter(candidate) ? end : candidate.plusNanos(1);
+        }
+    }
+
+    /**
+     * Проверяет, что интервалы задач попарно не пересекаются, за O(m log m) сортировкой по началу.
+     */
+    static boolean areDisjoint(Collection<? extends Task> tasks) {
+        List<Task> scheduled = new ArrayList<>();
+        for (Task task : tasks) {
+            if (task.getStartTime() != null) {
+                scheduled.add(task);
+            }
+        }
+        scheduled.sort(Comparator.comparing(Task::getStartTime));
+        for (int i = 1; i < scheduled.size(); i++) {
+            Task previous = scheduled.get(i - 1);
+            Task next = scheduled.get(i);
+            if (previous.getStartTime().equals(next.getStartTime()) || previous.getEndTime().isAfter(next.getStartTime())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void clear() {
+        slotsByStart.clear();
+        slotsById.clear();
+    }
+
+    int size() {
+        return slotsById.size();
+    }
+
+    /**
+     * Снимок интервала на момент индексации: задачу могут изменить на месте до вызова update,
+     * поэтому старые границы хранятся отдельно от объекта задачи.
+     */
+    static class Slot {
+        final int id;
+        final Task task;
+        final LocalDateTime start;
+        final LocalDateTime end;
+
+        Slot(Task task, LocalDateTime start, LocalDateTime end) {
+            this.id = task.getId();
+            this.task = task;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
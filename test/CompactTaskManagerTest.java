@@ -0,0 +1,105 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactTaskManagerTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 5, 1, 9, 0);
+
+    private TaskManager taskManager;
+
+    @BeforeEach
+    public void setUp() {
+        taskManager = new CompactTaskManager();
+    }
+
+    @Test
+    void shouldMaterializeCopiesOfStoredFields() {
+        Task task = new Task("Task", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(45), START);
+        taskManager.addTask(task);
+
+        Task stored = taskManager.getTask(task.getId());
+        assertNotSame(task, stored);
+        assertEquals(task, stored);
+        assertEquals("Task", stored.getName());
+        assertEquals("Description", stored.getDescription());
+        assertEquals(Duration.ofMinutes(45), stored.getDuration());
+        assertEquals(START, stored.getStartTime());
+
+        stored.setStatus(TaskStatus.DONE);
+        assertEquals(TaskStatus.NEW, taskManager.getTask(task.getId()).getStatus());
+        taskManager.updateTask(stored);
+        assertEquals(TaskStatus.DONE, taskManager.getTask(task.getId()).getStatus());
+        assertEquals(List.of(task), taskManager.getHistory());
+    }
+
+    @Test
+    void shouldAggregateEpicFromStoredSubtasks() {
+        Epic epic = new Epic("Epic", "Description", 0, TaskStatus.NEW);
+        taskManager.addEpic(epic);
+        Subtask first = new Subtask("First", "Description", 0, TaskStatus.DONE, epic.getId(), Duration.ofMinutes(30), START);
+        Subtask second = new Subtask("Second", "Description", 0, TaskStatus.NEW, epic.getId(), Duration.ofMinutes(60), START.plusHours(2));
+        taskManager.addSubtask(first);
+        taskManager.addSubtask(second);
+
+        Epic stored = (Epic) taskManager.getEpic(epic.getId());
+        assertEquals(TaskStatus.IN_PROGRESS, stored.getStatus());
+        assertEquals(Duration.ofMinutes(90), stored.getDuration());
+        assertEquals(START, stored.getStartTime());
+        assertEquals(START.plusHours(3), stored.getEndTime());
+        assertEquals(List.of(first, second), taskManager.getSubtasksOfEpic(epic.getId()));
+
+        taskManager.deleteSubtasks(second.getId());
+        assertEquals(TaskStatus.DONE, taskManager.getEpic(epic.getId()).getStatus());
+
+        taskManager.deleteEpic(epic.getId());
+        assertTrue(taskManager.getAllSubtasks().isEmpty());
+        assertTrue(taskManager.getPrioritizedTasks().isEmpty());
+        assertNull(taskManager.nextTaskAfter(START.minusDays(1)));
+    }
+
+    @Test
+    void shouldRejectOverlapsAndQuerySchedule() {
+        Task task = new Task("Task", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(60), START);
+        taskManager.addTask(task);
+        Epic epic = new Epic("Epic", "Description", 0, TaskStatus.NEW);
+        taskManager.addEpic(epic);
+        Subtask subtask = new Subtask("Subtask", "Description", 0, TaskStatus.NEW, epic.getId(), Duration.ofMinutes(30), START.plusHours(1));
+        taskManager.addSubtask(subtask);
+
+        assertThrows(IllegalArgumentException.class, () -> taskManager.addTask(
+                new Task("Overlap", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(30), START.plusMinutes(30))));
+        assertEquals(List.of(task), taskManager.getPrioritizedTasks());
+        assertEquals(List.of(task, subtask), taskManager.getTasksBetween(START.plusMinutes(59), START.plusMinutes(61)));
+        assertEquals(List.of(subtask), taskManager.tasksActiveAt(START.plusMinutes(60)));
+        assertEquals(subtask, taskManager.nextTaskAfter(START.plusSeconds(30)));
+        assertEquals(START.plusMinutes(90), taskManager.findFreeSlot(START, Duration.ofMinutes(15)));
+    }
+
+    @Test
+    void shouldScheduleBatchAndPageById() {
+        taskManager.addTask(new Task("Busy", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(60), START.plusMinutes(30)));
+        Epic epic = new Epic("Epic", "Description", 0, TaskStatus.NEW);
+        Subtask subtask = new Subtask("Subtask", "Description", 0, TaskStatus.NEW, 0, Duration.ofMinutes(30), null);
+        Task task = new Task("Task", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(30), null);
+
+        taskManager.scheduleAll(List.of(subtask, epic, task), START);
+
+        assertEquals(START, subtask.getStartTime());
+        assertEquals(START.plusMinutes(90), task.getStartTime());
+        assertEquals(epic.getId(), subtask.getEpicId());
+        assertEquals(START, taskManager.getEpic(epic.getId()).getStartTime());
+        assertEquals(List.of(task), taskManager.getAllTasks(1, 10));
+        assertEquals(List.of(1, 4), taskManager.streamAllTasks().map(Task::getId).collect(Collectors.toList()));
+
+        taskManager.deleteAllTask();
+        assertTrue(taskManager.getAllTasks().isEmpty());
+        assertEquals(List.of(), taskManager.getPrioritizedTasks());
+        assertEquals(1, taskManager.getAllSubtasks().size());
+    }
+}
@@ -0,0 +1,92 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentHistoryManagerTest {
+    private ConcurrentHistoryManager historyManager;
+
+    @BeforeEach
+    public void setUp() {
+        historyManager = new ConcurrentHistoryManager(3);
+    }
+
+    private Task task(int id) {
+        return new Task("Task " + id, "Description", id, TaskStatus.NEW, Duration.ofMinutes(60), LocalDateTime.now());
+    }
+
+    @Test
+    public void shouldMoveRepeatedViewToEndWithoutChangingId() {
+        Task task1 = task(1);
+        Task task2 = task(2);
+        historyManager.add(task1);
+        historyManager.add(task2);
+        historyManager.add(task1);
+
+        assertEquals(List.of(task2, task1), historyManager.getHistory());
+        assertEquals(1, task1.getId());
+    }
+
+    @Test
+    public void shouldAcceptHugeIdsWithinCapacity() {
+        Task huge = task(Integer.MAX_VALUE - 1);
+        historyManager.add(huge);
+        historyManager.add(task(10_000_000));
+
+        assertEquals(2, historyManager.size());
+        historyManager.remove(Integer.MAX_VALUE - 1);
+        assertEquals(1, historyManager.getHistory().size());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyViewed() {
+        Task task1 = task(1);
+        Task task2 = task(2);
+        Task task3 = task(3);
+        Task task4 = task(4);
+        historyManager.add(task1);
+        historyManager.add(task2);
+        historyManager.add(task3);
+        historyManager.add(task1);
+        historyManager.add(task4);
+
+        assertEquals(List.of(task3, task1, task4), historyManager.getHistory());
+    }
+
+    @Test
+    public void shouldRemoveById() {
+        historyManager.add(task(1));
+        historyManager.add(task(2));
+        historyManager.remove(1);
+        historyManager.remove(5);
+
+        assertEquals(1, historyManager.size());
+        assertEquals(2, historyManager.getHistory().get(0).getId());
+    }
+
+    @Test
+    public void shouldStayBoundedUnderConcurrentViews() throws InterruptedException {
+        ConcurrentHistoryManager shared = new ConcurrentHistoryManager(100);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            int offset = t * 10_000;
+            executor.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    shared.add(task(offset + i % 500));
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(100, shared.size());
+        assertEquals(100, shared.getHistory().size());
+    }
+}
@@ -0,0 +1,107 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentTaskManagerTest {
+    private TaskManager taskManager;
+
+    @BeforeEach
+    public void setUp() {
+        taskManager = new ConcurrentTaskManager();
+    }
+
+    @Test
+    public void shouldAddAndRetrieveDifferentTasks() {
+        LocalDateTime start = LocalDateTime.now();
+        Task task = new Task("Task", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(60), start);
+        Epic epic = new Epic("Epic", "Description", 0, TaskStatus.NEW);
+        taskManager.addTask(task);
+        taskManager.addEpic(epic);
+        Subtask subtask = new Subtask("Subtask", "Description", 0, TaskStatus.DONE, epic.getId(), Duration.ofMinutes(60), start.plusHours(2));
+        taskManager.addSubtask(subtask);
+
+        assertEquals(task, taskManager.getTask(1));
+        assertEquals(epic, taskManager.getEpic(2));
+        assertEquals(subtask, taskManager.getSubtasks(3));
+        assertEquals(TaskStatus.DONE, epic.getStatus());
+        assertEquals(List.of(subtask), taskManager.getSubtasksOfEpic(epic.getId()));
+        assertEquals(3, taskManager.getHistory().size());
+    }
+
+    @Test
+    public void shouldKeepScheduleConsistentUnderConcurrentInserts() throws Exception {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        int threads = 8;
+        int perThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    // Все потоки пытаются занять одни и те же слоты: успешно только одно добавление на слот
+                    Task task = new Task("Task", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(30), start.plusHours(i));
+                    try {
+                        taskManager.addTask(task);
+                    } catch (IllegalArgumentException e) {
+                        rejected.incrementAndGet();
+                    }
+                    taskManager.getPrioritizedTasks();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        List<Task> prioritized = taskManager.getPrioritizedTasks();
+        assertEquals(perThread, prioritized.size());
+        assertEquals(perThread * (threads - 1), rejected.get());
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < prioritized.size(); i++) {
+            assertTrue(ids.add(prioritized.get(i).getId()));
+            assertEquals(start.plusHours(i), prioritized.get(i).getStartTime());
+        }
+    }
+
+    @Test
+    public void shouldUpdateEpicsFromDifferentThreads() throws Exception {
+        Epic epic = new Epic("Epic", "Description", 0, TaskStatus.NEW);
+        taskManager.addEpic(epic);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t * 1000;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 100; i++) {
+                    taskManager.addSubtask(new Subtask("Subtask", "Description", 0, TaskStatus.DONE, epic.getId(),
+                            Duration.ofMinutes(10), start.plusHours(offset + i)));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(400, taskManager.getSubtasksOfEpic(epic.getId()).size());
+        assertEquals(Duration.ofMinutes(4000), epic.getDuration());
+        assertEquals(TaskStatus.DONE, epic.getStatus());
+    }
+}
@@ -42,4 +42,65 @@ public class EpicTest {
         taskManager.addSubtask(new Subtask("Subtask 2", "Description", 3, TaskStatus.IN_PROGRESS, epic.getId(), Duration.ofMinutes(45), LocalDateTime.now().plusMinutes(30)));
         assertEquals(TaskStatus.IN_PROGRESS, epic.getStatus());
     }
+
+    @Test
+    public void shouldRecalculateTimeOnSubtaskUpdateAndDelete() {
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 9, 0);
+        Subtask subtask1 = new Subtask("Subtask 1", "Description", 2, TaskStatus.NEW, epic.getId(), Duration.ofMinutes(30), start);
+        Subtask subtask2 = new Subtask("Subtask 2", "Description", 3, TaskStatus.NEW, epic.getId(), Duration.ofMinutes(45), start.plusHours(2));
+        taskManager.addSubtask(subtask1);
+        taskManager.addSubtask(subtask2);
+        assertEquals(Duration.ofMinutes(75), epic.getDuration());
+        assertEquals(start, epic.getStartTime());
+        assertEquals(start.plusHours(2).plusMinutes(45), epic.getEndTime());
+
+        subtask1.setStartTime(start.plusHours(4));
+        subtask1.setStatus(TaskStatus.DONE);
+        taskManager.updateSubtask(subtask1);
+        assertEquals(start.plusHours(2), epic.getStartTime());
+        assertEquals(start.plusHours(4).plusMinutes(30), epic.getEndTime());
+        assertEquals(TaskStatus.IN_PROGRESS, epic.getStatus());
+
+        taskManager.deleteSubtasks(subtask2.getId());
+        assertEquals(Duration.ofMinutes(30), epic.getDuration());
+        assertEquals(start.plusHours(4), epic.getStartTime());
+        assertEquals(TaskStatus.DONE, epic.getStatus());
+    }
+
+    @Test
+    public void shouldResetWhenAllSubtasksDeleted() {
+        taskManager.addSubtask(new Subtask("Subtask 1", "Description", 2, TaskStatus.DONE, epic.getId(), Duration.ofMinutes(30), LocalDateTime.now()));
+        taskManager.deleteAllSubtask();
+        assertEquals(TaskStatus.NEW, epic.getStatus());
+        assertEquals(Duration.ZERO, epic.getDuration());
+        assertNull(epic.getStartTime());
+        assertNull(epic.getEndTime());
+        assertTrue(epic.getSubtasks().isEmpty());
+    }
+
+    @Test
+    public void shouldRecalculateBoundsLazilyAfterBulkChanges() {
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 9, 0);
+        Epic standalone = new Epic("Epic 2", "Description", 10, TaskStatus.NEW);
+        for (int i = 0; i < 100; i++) {
+            standalone.addSubtask(new Subtask("Subtask " + i, "Description", 100 + i, TaskStatus.DONE, 10,
+                    Duration.ofMinutes(30), start.plusHours(i)));
+        }
+        assertEquals(TaskStatus.DONE, standalone.getStatus());
+        assertEquals(Duration.ofMinutes(3000), standalone.getDuration());
+
+        Subtask first = standalone.getSubtasks().get(0);
+        Subtask last = standalone.getSubtasks().get(99);
+        standalone.removeSubtask(first);
+        standalone.removeSubtask(last);
+        Subtask moved = standalone.getSubtasks().get(10);
+        moved.setStatus(TaskStatus.NEW);
+        moved.setStartTime(start.minusHours(5));
+        standalone.updateSubtask(moved);
+
+        assertEquals(TaskStatus.IN_PROGRESS, standalone.getStatus());
+        assertEquals(start.minusHours(5), standalone.getStartTime());
+        assertEquals(start.plusHours(98).plusMinutes(30), standalone.getEndTime());
+        assertEquals(Duration.ofMinutes(98 * 30), standalone.getDuration());
+    }
 }
@@ -6,6 +6,7 @@ import java.time.Duration;
 import java.time.LocalDateTime;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
 
 public class FileBackedTaskManagerExceptionTest {
 
@@ -21,6 +22,7 @@ public class FileBackedTaskManagerExceptionTest {
     public void testSaveToFileWithIOException() throws IOException {
         File tempFile = Files.createTempFile("tasks", ".csv").toFile();
         tempFile.setReadOnly();
+        assumeFalse(tempFile.canWrite(), "Права доступа к файлу не действуют, например при запуске от root");
 
         FileBackedTaskManager manager = new FileBackedTaskManager(tempFile);
         Task task = new Task("Task 1", "Description 1", 1, TaskStatus.NEW, Duration.ofMinutes(60), LocalDateTime.now());
@@ -46,4 +48,19 @@ public class FileBackedTaskManagerExceptionTest {
 
         tempFile.delete();
     }
+
+    @Test
+    public void testEnableWriteBehindRejectsIntervalShorterThanMillisecond() throws IOException {
+        File tempFile = Files.createTempFile("tasks", ".csv").toFile();
+        FileBackedTaskManager manager = new FileBackedTaskManager(tempFile);
+
+        assertThrows(IllegalArgumentException.class, () -> manager.enableWriteBehind(Duration.ZERO, 10));
+        assertThrows(IllegalArgumentException.class, () -> manager.enableWriteBehind(Duration.ofNanos(500_000), 10));
+
+        manager.enableWriteBehind(Duration.ofHours(1), 10);
+        manager.addTask(new Task("Task 1", "Description 1", 0, TaskStatus.NEW, Duration.ZERO, null));
+        manager.close();
+        assertEquals(1, FileBackedTaskManager.loadFromFile(tempFile).getAllTasks().size());
+        tempFile.delete();
+    }
 }
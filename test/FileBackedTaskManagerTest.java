@@ -0,0 +1,262 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileBackedTaskManagerTest {
+    private File file;
+    private File journal;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        file = Files.createTempFile("tasks", ".csv").toFile();
+        file.delete();
+        journal = new File(file.getPath() + ".journal");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        file.delete();
+        journal.delete();
+    }
+
+    @Test
+    public void shouldRestoreTasksWithTheirIds() {
+        FileBackedTaskManager manager = new FileBackedTaskManager(file);
+        LocalDateTime start = LocalDateTime.now();
+        manager.addTask(new Task("Task", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(60), start));
+        Epic epic = new Epic("Epic", "Description", 0, TaskStatus.NEW);
+        manager.addEpic(epic);
+        manager.addSubtask(new Subtask("Subtask", "Description", 0, TaskStatus.DONE, epic.getId(), Duration.ofMinutes(30), start.plusHours(2)));
+        manager.deleteTask(1);
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(file);
+
+        assertTrue(loaded.getAllTasks().isEmpty());
+        assertEquals(1, loaded.getSubtasksOfEpic(epic.getId()).size());
+        assertEquals(TaskStatus.DONE, loaded.getEpic(epic.getId()).getStatus());
+    }
+
+    @Test
+    public void shouldAppendToJournalInsteadOfRewritingSnapshot() {
+        FileBackedTaskManager manager = new FileBackedTaskManager(file, 100);
+        LocalDateTime start = LocalDateTime.now();
+        Task task = new Task("Task", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(60), start);
+        manager.addTask(task);
+        task.setStatus(TaskStatus.IN_PROGRESS);
+        manager.updateTask(task);
+
+        assertFalse(file.exists());
+        assertTrue(journal.exists());
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(file, 100);
+        assertEquals(TaskStatus.IN_PROGRESS, loaded.getTask(task.getId()).getStatus());
+    }
+
+    @Test
+    public void shouldCompactJournalIntoSnapshot() {
+        FileBackedTaskManager manager = new FileBackedTaskManager(file, 3);
+        LocalDateTime start = LocalDateTime.now();
+        for (int i = 0; i < 4; i++) {
+            manager.addTask(new Task("Task " + i, "Description", 0, TaskStatus.NEW, Duration.ofMinutes(30), start.plusHours(i)));
+        }
+        manager.deleteTask(2);
+
+        assertTrue(file.exists());
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(file, 3);
+        assertEquals(3, loaded.getAllTasks().size());
+        assertNull(loaded.getTask(2));
+    }
+
+    @Test
+    public void shouldDeferWritesUntilFlush() {
+        FileBackedTaskManager manager = new FileBackedTaskManager(file);
+        manager.enableWriteBehind(Duration.ofHours(1), 1000);
+        LocalDateTime start = LocalDateTime.now();
+        for (int i = 0; i < 10; i++) {
+            manager.addTask(new Task("Task " + i, "Description", 0, TaskStatus.NEW, Duration.ofMinutes(30), start.plusHours(i)));
+        }
+        assertFalse(file.exists());
+
+        manager.close();
+
+        assertEquals(10, FileBackedTaskManager.loadFromFile(file).getAllTasks().size());
+    }
+
+    @Test
+    public void shouldFlushInBackgroundAfterMaxDirtyCount() throws InterruptedException {
+        FileBackedTaskManager manager = new FileBackedTaskManager(file, 100);
+        manager.enableWriteBehind(Duration.ofHours(1), 2);
+        LocalDateTime start = LocalDateTime.now();
+        manager.addTask(new Task("Task 1", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(30), start));
+        manager.addTask(new Task("Task 2", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(30), start.plusHours(1)));
+
+        for (int i = 0; i < 100 && journal.length() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, FileBackedTaskManager.loadFromFile(file, 100).getAllTasks().size());
+        manager.close();
+    }
+
+    @Test
+    public void shouldRoundTripBinarySnapshot() {
+        FileBackedTaskManager manager = new FileBackedTaskManager(file, 0, SnapshotFormat.BINARY);
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 9, 0);
+        manager.addTask(new Task("Task", "Описание", 0, TaskStatus.IN_PROGRESS, Duration.ofMinutes(45), start));
+        manager.addTask(new Task("Unscheduled", "Описание", 0, TaskStatus.NEW, Duration.ZERO, null));
+        Epic epic = new Epic("Epic", "Description", 0, TaskStatus.NEW);
+        manager.addEpic(epic);
+        manager.addSubtask(new Subtask("Subtask", "Description", 0, TaskStatus.DONE, epic.getId(), Duration.ofMinutes(30), start.plusHours(2)));
+
+        assertTrue(BinarySnapshot.isBinary(file));
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(file);
+        Task task = loaded.getTask(1);
+        assertEquals("Описание", task.getDescription());
+        assertEquals(TaskStatus.IN_PROGRESS, task.getStatus());
+        assertEquals(start, task.getStartTime());
+        assertEquals(Duration.ofMinutes(45), task.getDuration());
+        assertNull(loaded.getTask(2).getStartTime());
+        assertEquals(start.plusHours(2), loaded.getEpic(epic.getId()).getStartTime());
+        assertEquals(TaskStatus.DONE, loaded.getEpic(epic.getId()).getStatus());
+    }
+
+    @Test
+    public void binarySnapshotShouldKeepSecondsAndNanos() {
+        FileBackedTaskManager manager = new FileBackedTaskManager(file, 0, SnapshotFormat.BINARY);
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 9, 0, 30, 123_456_789);
+        manager.addTask(new Task("Task", "Описание", 0, TaskStatus.NEW, Duration.ofMinutes(1), start));
+        manager.addTask(new Task("Next", "Описание", 0, TaskStatus.NEW, Duration.ofMinutes(1), start.plusSeconds(60)));
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(file);
+
+        assertEquals(start, loaded.getTask(1).getStartTime());
+        assertEquals(start.plusSeconds(60), loaded.getTask(2).getStartTime());
+    }
+
+    @Test
+    public void shouldQuoteSpecialCharactersInSnapshotAndJournal() {
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 9, 0, 15, 123_456_789);
+        for (int threshold : new int[]{0, 100}) {
+            FileBackedTaskManager manager = new FileBackedTaskManager(file, threshold);
+            manager.addTask(new Task("Купить молоко, хлеб", "Сказать \"спасибо\"\nи уйти", 0, TaskStatus.NEW,
+                    Duration.ofMinutes(15), start));
+            manager.addTask(new Task("null", null, 0, TaskStatus.DONE, Duration.ZERO, null));
+
+            FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(file, threshold);
+            Task first = loaded.getTask(1);
+            assertEquals("Купить молоко, хлеб", first.getName());
+            assertEquals("Сказать \"спасибо\"\nи уйти", first.getDescription());
+            assertEquals(start, first.getStartTime());
+            assertEquals("null", loaded.getTask(2).getName());
+            assertNull(loaded.getTask(2).getDescription());
+            tearDown();
+        }
+    }
+
+    @Test
+    public void shouldReadSnapshotWrittenWithoutQuoting() throws IOException {
+        Files.writeString(file.toPath(), "id,type,name,status,description,duration,startTime,epic\r\n"
+                + "1,TASK,Task,NEW,,60,2024-05-01T09:00,0\r\n"
+                + "2,EPIC,Epic,NEW,Description,0,null,0\n"
+                + "\n"
+                + "3,SUBTASK,Subtask,DONE,Description,30,2024-05-01T11:00:30.5,2");
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(file);
+
+        assertEquals("", loaded.getTask(1).getDescription());
+        assertEquals(LocalDateTime.of(2024, 5, 1, 9, 0), loaded.getTask(1).getStartTime());
+        assertEquals(LocalDateTime.of(2024, 5, 1, 11, 0, 30, 500_000_000), loaded.getSubtasks(3).getStartTime());
+        assertEquals(TaskStatus.DONE, loaded.getEpic(2).getStatus());
+    }
+
+    @Test
+    public void shouldReportLineOfMalformedRecord() throws IOException {
+        Files.writeString(file.toPath(), "id,type,name,status,description,duration,startTime,epic\n"
+                + "1,TASK,Task,NEW,,60,null,0\n"
+                + "2,TASK,Task,NEW,,ten,null,0\n");
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> FileBackedTaskManager.loadFromFile(file));
+        assertTrue(e.getMessage().startsWith("Строка 3:"), e.getMessage());
+    }
+
+    @Test
+    public void shouldParseSnapshotInParallelChunksLikeSequentialLoad() throws IOException {
+        FileBackedTaskManager manager = new FileBackedTaskManager(file);
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 9, 0);
+        List<Task> batch = new ArrayList<>();
+        Epic epic = new Epic("Epic", "Многострочное\n\"описание\", с запятой", 0, TaskStatus.NEW);
+        batch.add(epic);
+        for (int i = 0; i < 200; i++) {
+            String description = i % 3 == 0 ? "Строка 1\nстрока \"2\"" : "Описание " + i;
+            batch.add(new Task("Task " + i, description, 0, TaskStatus.NEW, Duration.ofMinutes(30), start.plusHours(2L * i)));
+            batch.add(new Subtask("Subtask " + i, description, 0, TaskStatus.DONE, epic.getId(), Duration.ofMinutes(30),
+                    start.plusHours(2L * i + 1)));
+        }
+        manager.addAll(batch);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        List<String> expected = new ArrayList<>();
+        TaskCsv.Reader reader = new TaskCsv.Reader(Channels.newChannel(new ByteArrayInputStream(bytes)));
+        reader.next();
+        while (reader.next()) {
+            expected.add(describe(reader.task(0)));
+        }
+        assertEquals(batch.size(), expected.size());
+
+        for (int chunkSize : new int[]{1, 7, 64, 1000, bytes.length}) {
+            List<Task> parsed = TaskCsv.parseSnapshot(bytes, ForkJoinPool.commonPool(), chunkSize);
+            assertEquals(expected, parsed.stream().map(FileBackedTaskManagerTest::describe).toList(), "Размер куска " + chunkSize);
+        }
+    }
+
+    @Test
+    public void shouldKeepStrayQuoteInsideBareLegacyValue() throws IOException {
+        String csv = "id,type,name,status,description,duration,startTime,epic\n"
+                + "1,TASK,Monitor 27\",NEW,desc,0,2024-01-01T10:00,\n"
+                + "2,TASK,Cable,NEW,desc,0,null,\n";
+        Files.writeString(file.toPath(), csv);
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(file);
+
+        assertEquals("Monitor 27\"", loaded.getTask(1).getName());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 10, 0), loaded.getTask(1).getStartTime());
+        assertEquals("Cable", loaded.getTask(2).getName());
+        byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+        for (int chunkSize : new int[]{1, 5, 30, bytes.length}) {
+            List<Task> parsed = TaskCsv.parseSnapshot(bytes, ForkJoinPool.commonPool(), chunkSize);
+            assertEquals(List.of("Monitor 27\"", "Cable"), parsed.stream().map(Task::getName).toList(), "Размер куска " + chunkSize);
+        }
+    }
+
+    private static String describe(Task task) {
+        return task.getClass().getSimpleName() + task.getId() + ":" + task.getName() + ":" + task.getDescription()
+                + ":" + task.getStatus() + ":" + task.getStartTime() + ":" + task.getDuration();
+    }
+
+    @Test
+    public void shouldReportFirstMalformedRecordWhenParsingInParallel() {
+        StringBuilder csv = new StringBuilder("id,type,name,status,description,duration,startTime,epic\n");
+        for (int i = 1; i <= 100; i++) {
+            csv.append(i).append(",TASK,Task,").append(i == 40 || i == 90 ? "LOST" : "NEW").append(",,0,null,0\n");
+        }
+        byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> TaskCsv.parseSnapshot(bytes, ForkJoinPool.commonPool(), 128));
+        assertTrue(e.getMessage().startsWith("Строка 41:"), e.getMessage());
+    }
+}
@@ -0,0 +1,115 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpTaskServerTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+    private final TaskManager manager = Managers.getConcurrent();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private HttpTaskServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new HttpTaskServer(manager, 0);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    void shouldCreateUpdateAndDeleteTask() throws Exception {
+        HttpResponse<String> created = send("POST", "/tasks",
+                "{\"name\":\"Задача \\\"1\\\"\",\"description\":\"Описание\",\"status\":\"NEW\",\"duration\":30,\"startTime\":\"2024-01-01T10:00\"}");
+        assertEquals(201, created.statusCode());
+        Task task = manager.getAllTasks().get(0);
+        assertEquals("Задача \"1\"", task.getName());
+        assertEquals(Duration.ofMinutes(30), task.getDuration());
+        assertEquals(START, task.getStartTime());
+        assertEquals(TaskJson.toJson(task), created.body());
+
+        HttpResponse<String> updated = send("POST", "/tasks",
+                "{\"id\":" + task.getId() + ",\"name\":\"Задача\",\"description\":\"Описание\",\"status\":\"DONE\"}");
+        assertEquals(201, updated.statusCode());
+        assertEquals(TaskStatus.DONE, manager.getAllTasks().get(0).getStatus());
+
+        assertEquals(200, send("GET", "/tasks/" + task.getId(), null).statusCode());
+        assertEquals(200, send("DELETE", "/tasks/" + task.getId(), null).statusCode());
+        assertTrue(manager.getAllTasks().isEmpty());
+        assertEquals(404, send("GET", "/tasks/" + task.getId(), null).statusCode());
+    }
+
+    @Test
+    void shouldRejectOverlappingAndMalformedTasks() throws Exception {
+        manager.addTask(new Task("Занято", "", 0, TaskStatus.NEW, Duration.ofMinutes(60), START));
+
+        HttpResponse<String> overlap = send("POST", "/tasks",
+                "{\"name\":\"Пересечение\",\"duration\":15,\"startTime\":\"2024-01-01T10:30\"}");
+        assertEquals(406, overlap.statusCode());
+        assertEquals(400, send("POST", "/tasks", "{\"name\":").statusCode());
+        assertEquals(400, send("GET", "/tasks?limit=-1", null).statusCode());
+        assertEquals(404, send("POST", "/tasks", "{\"id\":999,\"name\":\"Нет такой\"}").statusCode());
+        assertEquals(1, manager.getAllTasks().size());
+    }
+
+    @Test
+    void shouldServeEpicSubtasksHistoryAndPrioritized() throws Exception {
+        Epic epic = new Epic("Эпик", "", 0, TaskStatus.NEW);
+        manager.addEpic(epic);
+        HttpResponse<String> created = send("POST", "/subtasks",
+                "{\"name\":\"Подзадача\",\"epicId\":" + epic.getId() + ",\"duration\":10,\"startTime\":\"2024-01-01T12:00\"}");
+        assertEquals(201, created.statusCode());
+        Subtask subtask = manager.getAllSubtasks().get(0);
+
+        assertEquals(TaskJson.toJson(List.of(subtask)), send("GET", "/epics/" + epic.getId() + "/subtasks", null).body());
+        assertEquals(404, send("GET", "/epics/999/subtasks", null).statusCode());
+        assertEquals(400, send("POST", "/subtasks", "{\"name\":\"Без эпика\",\"epicId\":999}").statusCode());
+        Task task = new Task("Задача", "", 0, TaskStatus.NEW, Duration.ofMinutes(10), START);
+        manager.addTask(task);
+        assertEquals(TaskJson.toJson(List.of(task)), send("GET", "/prioritized", null).body());
+        assertEquals("[]", send("GET", "/prioritized?after=2024-01-01T10:00&limit=5", null).body());
+
+        assertEquals("[]", send("GET", "/history", null).body(), "Проверки существования не попадают в историю");
+        send("GET", "/epics/" + epic.getId(), null);
+        assertEquals(List.of(epic.getId()),
+                manager.getHistory().stream().map(Task::getId).toList());
+    }
+
+    @Test
+    void shouldRoundTripTaskThroughJson() {
+        Subtask subtask = new Subtask("Имя\n\tс переносами", null, 7, TaskStatus.IN_PROGRESS, 3,
+                Duration.ofMinutes(45), START);
+        Map<String, Object> fields = new TaskJson.Reader(TaskJson.toJson(subtask)).readObject();
+        Subtask parsed = (Subtask) TaskJson.toTask(fields, Subtask.class);
+
+        assertEquals(subtask.getName(), parsed.getName());
+        assertNull(parsed.getDescription());
+        assertEquals(subtask.getStatus(), parsed.getStatus());
+        assertEquals(3, parsed.getEpicId());
+        assertEquals(subtask.getDuration(), parsed.getDuration());
+        assertEquals(subtask.getStartTime(), parsed.getStartTime());
+        assertEquals("SUBTASK", fields.get("type"));
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,70 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdStoreTest {
+
+    @Test
+    void shouldPutGetAndRemoveById() {
+        IdStore<String> store = new IdStore<>();
+
+        assertNull(store.put(3, "three"));
+        assertEquals("three", store.put(3, "три"));
+        store.put(100, "hundred");
+
+        assertEquals("три", store.get(3));
+        assertEquals(2, store.size());
+        assertTrue(store.containsKey(100));
+        assertNull(store.get(-1));
+        assertNull(store.get(1_000));
+
+        assertEquals("три", store.remove(3));
+        assertNull(store.remove(3));
+        assertFalse(store.containsKey(3));
+        assertEquals(1, store.size());
+        assertThrows(IllegalArgumentException.class, () -> store.put(-1, "minus"));
+    }
+
+    @Test
+    void shouldIterateAndPageInIdOrder() {
+        IdStore<Integer> store = new IdStore<>();
+        for (int id : new int[]{40, 2, 17, 5, 63, 64, 65}) {
+            store.put(id, id);
+        }
+        store.remove(17);
+
+        assertEquals(List.of(2, 5, 40, 63, 64, 65), store.values());
+        assertEquals(List.of(2, 5, 40, 63, 64, 65), store.stream().collect(Collectors.toList()));
+        assertEquals(List.of(2, 5, 40, 63, 64, 65), store.ids().boxed().collect(Collectors.toList()));
+        assertEquals(List.of(2, 5), store.page(0, 2));
+        assertEquals(List.of(40, 63), store.page(5, 2));
+        assertEquals(List.of(64, 65), store.page(63, 10));
+        assertEquals(List.of(), store.page(65, 10));
+
+        store.clear();
+        assertTrue(store.isEmpty());
+        assertEquals(List.of(), store.values());
+    }
+
+    @Test
+    void shouldReleaseEmptyPagesAndHandleSparseIds() {
+        IdStore<Integer> store = new IdStore<>();
+        store.put(10_000_000, 1);
+        store.put(IdStore.PAGE_SIZE - 1, 2);
+        store.put(IdStore.PAGE_SIZE, 3);
+
+        assertEquals(List.of(2, 3, 1), store.values());
+        assertEquals(List.of(1), store.page(IdStore.PAGE_SIZE, 10));
+        assertEquals(List.of(), store.page(Integer.MAX_VALUE, 10));
+
+        store.remove(IdStore.PAGE_SIZE);
+        assertNull(store.get(IdStore.PAGE_SIZE));
+        assertFalse(store.containsKey(IdStore.PAGE_SIZE + 1));
+        assertEquals(List.of(IdStore.PAGE_SIZE - 1, 10_000_000), store.ids().boxed().collect(Collectors.toList()));
+        store.put(IdStore.PAGE_SIZE + 1, 4);
+        assertEquals(List.of(2, 4, 1), store.values());
+    }
+}
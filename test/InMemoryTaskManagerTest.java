@@ -3,6 +3,7 @@ import org.junit.jupiter.api.Test;
 import java.util.List;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.function.Supplier;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class InMemoryTaskManagerTest {
@@ -17,7 +18,7 @@ public class InMemoryTaskManagerTest {
     public void shouldAddAndRetrieveDifferentTasks() {
         Task task = new Task("Task", "Description", 1, TaskStatus.NEW, Duration.ofMinutes(60), LocalDateTime.now());
         Epic epic = new Epic("Epic", "Description", 2, TaskStatus.NEW);
-        Subtask subtask = new Subtask("Subtask", "Description", 3, TaskStatus.NEW, 2, Duration.ofMinutes(60), LocalDateTime.now());
+        Subtask subtask = new Subtask("Subtask", "Description", 3, TaskStatus.NEW, 2, Duration.ofMinutes(60), LocalDateTime.now().plusMinutes(120));
 
         taskManager.addTask(task);
         taskManager.addEpic(epic);
@@ -75,6 +76,228 @@ public class InMemoryTaskManagerTest {
         assertThrows(IllegalArgumentException.class, () -> taskManager.addTask(task2));
     }
 
+    @Test
+    void adjacentTasksDoNotOverlap() {
+        LocalDateTime start = LocalDateTime.now();
+        Task task1 = new Task("Task 1", "Description 1", 1, TaskStatus.NEW, Duration.ofMinutes(60), start);
+        Task task2 = new Task("Task 2", "Description 2", 2, TaskStatus.NEW, Duration.ofMinutes(60), start.plusMinutes(60));
+        taskManager.addTask(task1);
+        assertDoesNotThrow(() -> taskManager.addTask(task2));
+    }
+
+    @Test
+    void overlapSubtaskWithTask() {
+        LocalDateTime start = LocalDateTime.now();
+        taskManager.addTask(new Task("Task", "Description", 1, TaskStatus.NEW, Duration.ofMinutes(60), start));
+        Epic epic = new Epic("Epic", "Description", 2, TaskStatus.NEW);
+        taskManager.addEpic(epic);
+        Subtask subtask = new Subtask("Subtask", "Description", 3, TaskStatus.NEW, epic.getId(), Duration.ofMinutes(30), start.plusMinutes(30));
+        assertThrows(IllegalArgumentException.class, () -> taskManager.addSubtask(subtask));
+    }
+
+    @Test
+    void overlapOnUpdate() {
+        LocalDateTime start = LocalDateTime.now();
+        Task task1 = new Task("Task 1", "Description 1", 1, TaskStatus.NEW, Duration.ofMinutes(60), start);
+        Task task2 = new Task("Task 2", "Description 2", 2, TaskStatus.NEW, Duration.ofMinutes(60), start.plusMinutes(120));
+        taskManager.addTask(task1);
+        taskManager.addTask(task2);
+
+        Task moved = new Task("Task 2", "Description 2", task2.getId(), TaskStatus.NEW, Duration.ofMinutes(60), start.plusMinutes(30));
+        assertThrows(IllegalArgumentException.class, () -> taskManager.updateTask(moved));
+
+        Task shifted = new Task("Task 2", "Description 2", task2.getId(), TaskStatus.NEW, Duration.ofMinutes(90), start.plusMinutes(90));
+        assertDoesNotThrow(() -> taskManager.updateTask(shifted));
+    }
+
+    @Test
+    void slotIsFreedAfterDelete() {
+        LocalDateTime start = LocalDateTime.now();
+        Task task1 = new Task("Task 1", "Description 1", 1, TaskStatus.NEW, Duration.ofMinutes(60), start);
+        taskManager.addTask(task1);
+        taskManager.deleteTask(task1.getId());
+        Task task2 = new Task("Task 2", "Description 2", 2, TaskStatus.NEW, Duration.ofMinutes(60), start);
+        assertDoesNotThrow(() -> taskManager.addTask(task2));
+    }
+
+    @Test
+    void addAllLinksSubtasksToEpicFromSameBatch() {
+        LocalDateTime start = LocalDateTime.now();
+        taskManager.addTask(new Task("Task", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(60), start));
+        Epic epic = new Epic("Epic", "Description", 100, TaskStatus.NEW);
+        Subtask subtask1 = new Subtask("Subtask 1", "Description", 0, TaskStatus.DONE, 100, Duration.ofMinutes(30), start.plusHours(1));
+        Subtask subtask2 = new Subtask("Subtask 2", "Description", 0, TaskStatus.DONE, 100, Duration.ofMinutes(30), start.plusHours(2));
+
+        taskManager.addAll(List.of(subtask1, epic, subtask2));
+
+        assertEquals(3, epic.getId());
+        assertEquals(epic.getId(), subtask1.getEpicId());
+        assertEquals(2, taskManager.getSubtasksOfEpic(epic.getId()).size());
+        assertEquals(TaskStatus.DONE, epic.getStatus());
+        assertEquals(start.plusHours(1), epic.getStartTime());
+    }
+
+    @Test
+    void addAllRejectsAmbiguousEpicReferenceWithoutChanges() {
+        Epic existing = new Epic("Existing", "Description", 0, TaskStatus.NEW);
+        taskManager.addEpic(existing);
+        Epic first = new Epic("Epic 1", "Description", 0, TaskStatus.NEW);
+        Epic second = new Epic("Epic 2", "Description", 0, TaskStatus.NEW);
+        Subtask subtask = new Subtask("Subtask", "Description", 0, TaskStatus.NEW, 0, Duration.ZERO, null);
+
+        assertThrows(IllegalArgumentException.class, () -> taskManager.addAll(List.of(first, second, subtask)));
+        Epic clash = new Epic("Epic", "Description", existing.getId(), TaskStatus.NEW);
+        Subtask forExisting = new Subtask("Subtask", "Description", 0, TaskStatus.NEW, existing.getId(), Duration.ZERO, null);
+        assertThrows(IllegalArgumentException.class, () -> taskManager.addAll(List.of(clash, forExisting)));
+        assertEquals(1, taskManager.getAllEpics().size());
+        assertTrue(taskManager.getAllSubtasks().isEmpty());
+
+        taskManager.addAll(List.of(first, second));
+        assertEquals(3, taskManager.getAllEpics().size());
+    }
+
+    @Test
+    void addAllRejectsOverlappingBatchWithoutChanges() {
+        LocalDateTime start = LocalDateTime.now();
+        Task task1 = new Task("Task 1", "Description 1", 0, TaskStatus.NEW, Duration.ofMinutes(60), start);
+        Task task2 = new Task("Task 2", "Description 2", 0, TaskStatus.NEW, Duration.ofMinutes(60), start.plusMinutes(30));
+
+        assertThrows(IllegalArgumentException.class, () -> taskManager.addAll(List.of(task1, task2)));
+        assertTrue(taskManager.getAllTasks().isEmpty());
+    }
+
+    @Test
+    void subtasksOfEpicStayConsistentAfterDeletes() {
+        LocalDateTime start = LocalDateTime.now();
+        Epic epic = new Epic("Epic", "Description", 0, TaskStatus.NEW);
+        taskManager.addEpic(epic);
+        Subtask subtask1 = new Subtask("Subtask 1", "Description", 0, TaskStatus.NEW, epic.getId(), Duration.ofMinutes(30), start);
+        Subtask subtask2 = new Subtask("Subtask 2", "Description", 0, TaskStatus.NEW, epic.getId(), Duration.ofMinutes(30), start.plusHours(1));
+        taskManager.addSubtask(subtask1);
+        taskManager.addSubtask(subtask2);
+
+        List<Subtask> subtasks = taskManager.getSubtasksOfEpic(epic.getId());
+        assertEquals(List.of(subtask1, subtask2), subtasks);
+        assertThrows(UnsupportedOperationException.class, () -> subtasks.add(subtask1));
+
+        taskManager.deleteSubtasks(subtask1.getId());
+        assertEquals(List.of(subtask2), taskManager.getSubtasksOfEpic(epic.getId()));
+
+        taskManager.deleteAllSubtask();
+        assertTrue(taskManager.getSubtasksOfEpic(epic.getId()).isEmpty());
+
+        taskManager.deleteEpic(epic.getId());
+        assertTrue(taskManager.getSubtasksOfEpic(epic.getId()).isEmpty());
+    }
+
+    @Test
+    void shouldPageTasksById() {
+        LocalDateTime start = LocalDateTime.now();
+        for (int i = 0; i < 5; i++) {
+            taskManager.addTask(new Task("Task " + i, "Description", 0, TaskStatus.NEW, Duration.ofMinutes(30), start.plusHours(i)));
+        }
+        taskManager.deleteTask(2);
+
+        List<Task> first = taskManager.getAllTasks(0, 2);
+        assertEquals(List.of(1, 3), first.stream().map(Task::getId).toList());
+        List<Task> second = taskManager.getAllTasks(first.get(1).getId(), 2);
+        assertEquals(List.of(4, 5), second.stream().map(Task::getId).toList());
+        assertTrue(taskManager.getAllTasks(5, 2).isEmpty());
+        assertEquals(4, taskManager.streamAllTasks().count());
+    }
+
+    @Test
+    void shouldPagePrioritizedTasksByStartTime() {
+        LocalDateTime start = LocalDateTime.now();
+        Task late = new Task("Task 1", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(30), start.plusHours(2));
+        Task early = new Task("Task 2", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(30), start);
+        Task middle = new Task("Task 3", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(30), start.plusHours(1));
+        taskManager.addTask(late);
+        taskManager.addTask(early);
+        taskManager.addTask(middle);
+
+        List<Task> first = taskManager.getPrioritizedTasks(null, 2);
+        assertEquals(List.of(early, middle), first);
+        assertEquals(List.of(late), taskManager.getPrioritizedTasks(middle.getStartTime(), 2));
+        assertEquals(early, taskManager.streamPrioritizedTasks().findFirst().orElseThrow());
+    }
+
+    @Test
+    void shouldQueryScheduleByTimeRange() {
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 8, 0);
+        Task morning = new Task("Morning", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(90), start);
+        Task evening = new Task("Evening", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(60), start.plusHours(10));
+        taskManager.addTask(morning);
+        taskManager.addTask(evening);
+        Epic epic = new Epic("Epic", "Description", 0, TaskStatus.NEW);
+        taskManager.addEpic(epic);
+        Subtask noon = new Subtask("Noon", "Description", 0, TaskStatus.NEW, epic.getId(), Duration.ofMinutes(30), start.plusHours(4));
+        taskManager.addSubtask(noon);
+
+        assertEquals(List.of(morning, noon), taskManager.getTasksBetween(start.plusHours(1), start.plusHours(9)));
+        assertEquals(List.of(morning, noon, evening), taskManager.getTasksBetween(start, start.plusHours(11)));
+        assertTrue(taskManager.getTasksBetween(start.plusHours(2), start.plusHours(3)).isEmpty());
+
+        assertEquals(noon, taskManager.nextTaskAfter(start));
+        assertNull(taskManager.nextTaskAfter(start.plusHours(10)));
+
+        assertEquals(List.of(noon), taskManager.tasksActiveAt(start.plusHours(4).plusMinutes(10)));
+        assertTrue(taskManager.tasksActiveAt(start.plusHours(4).plusMinutes(30)).isEmpty());
+    }
+
+    @Test
+    void shouldFindEarliestFreeSlot() {
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 9, 0);
+        taskManager.addTask(new Task("Task 1", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(60), start));
+        taskManager.addTask(new Task("Task 2", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(60), start.plusMinutes(90)));
+        taskManager.addTask(new Task("Task 3", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(60), start.plusMinutes(150)));
+
+        assertEquals(start.plusMinutes(60), taskManager.findFreeSlot(start.plusMinutes(30), Duration.ofMinutes(30)));
+        assertEquals(start.plusMinutes(210), taskManager.findFreeSlot(start.plusMinutes(30), Duration.ofMinutes(45)));
+        assertEquals(start.minusHours(1), taskManager.findFreeSlot(start.minusHours(1), Duration.ofMinutes(60)));
+    }
+
+    @Test
+    void shouldScheduleBatchIntoGaps() {
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 9, 0);
+        taskManager.addTask(new Task("Busy", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(60), start.plusMinutes(30)));
+        Task first = new Task("First", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(30), null);
+        Task second = new Task("Second", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(30), null);
+        Task third = new Task("Third", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(30), null);
+
+        taskManager.scheduleAll(List.of(first, second, third), start);
+
+        assertEquals(start, first.getStartTime());
+        assertEquals(start.plusMinutes(90), second.getStartTime());
+        assertEquals(start.plusMinutes(120), third.getStartTime());
+        assertEquals(4, taskManager.getPrioritizedTasks().size());
+
+        Task next = new Task("Next", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(15), null);
+        taskManager.scheduleTask(next, start);
+        assertEquals(start.plusMinutes(150), next.getStartTime());
+    }
+
+    @Test
+    void rejectedScheduleAllLeavesStartTimesUntouched() {
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 9, 0);
+        for (Supplier<TaskManager> factory : List.<Supplier<TaskManager>>of(Managers::getDefault,
+                Managers::getConcurrent, Managers::getCompact, Managers::getSharded)) {
+            TaskManager manager = factory.get();
+            Subtask subtask = new Subtask("Subtask", "Description", 0, TaskStatus.NEW, 0, Duration.ofMinutes(30), null);
+            Task task = new Task("Task", "Description", 0, TaskStatus.NEW, Duration.ofMinutes(30), start.minusDays(1));
+            List<Task> batch = List.of(new Epic("Epic 1", "Description", 0, TaskStatus.NEW),
+                    new Epic("Epic 2", "Description", 0, TaskStatus.NEW), subtask, task);
+
+            String name = manager.getClass().getSimpleName();
+            assertThrows(IllegalArgumentException.class, () -> manager.scheduleAll(batch, start), name);
+
+            assertNull(subtask.getStartTime(), name);
+            assertEquals(start.minusDays(1), task.getStartTime(), name);
+            assertEquals(0, task.getId(), name);
+            assertTrue(manager.getAllTasks().isEmpty() && manager.getAllEpics().isEmpty(), name);
+        }
+    }
+
     @Test
     public void testGetPrioritizedTasks() {
         Task task1 = new Task("Task 1", "Description 1", 1, TaskStatus.NEW, Duration.ofMinutes(60), LocalDateTime.now().plusHours(2));
@@ -8,4 +8,22 @@ public class ManagersTest {
         assertNotNull(taskManager, "TaskManager should be initialized and not null.");
         assertTrue(taskManager instanceof InMemoryTaskManager, "TaskManager should be an instance of InMemoryTaskManager.");
     }
+
+    @Test
+    public void shouldReturnConcurrentTaskManager() {
+        TaskManager taskManager = Managers.getConcurrent();
+        assertTrue(taskManager instanceof ConcurrentTaskManager, "TaskManager should be an instance of ConcurrentTaskManager.");
+    }
+
+    @Test
+    public void shouldReturnCompactTaskManager() {
+        TaskManager taskManager = Managers.getCompact();
+        assertTrue(taskManager instanceof CompactTaskManager, "TaskManager should be an instance of CompactTaskManager.");
+    }
+
+    @Test
+    public void shouldReturnShardedTaskManager() {
+        TaskManager taskManager = Managers.getSharded();
+        assertTrue(taskManager instanceof ShardedTaskManager, "TaskManager should be an instance of ShardedTaskManager.");
+    }
 }
@@ -0,0 +1,74 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeteredTaskManagerTest {
+    @Test
+    void histogramQuantilesShouldStayWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000, histogram.getMaxNanos());
+        assertEquals(100_000L * 100_001 / 2, histogram.getSumNanos());
+        for (double quantile : new double[]{0.5, 0.9, 0.99}) {
+            long expected = (long) (quantile * 100_000);
+            long actual = histogram.getValueAtQuantile(quantile);
+            assertTrue(actual >= expected && actual <= expected + expected / LatencyHistogram.SUB_BUCKETS,
+                    "Квантиль " + quantile + ": " + actual);
+        }
+        assertEquals(100_000, histogram.getValueAtQuantile(1));
+        for (long value : new long[]{0, 7, 8, 1000, Long.MAX_VALUE}) {
+            assertTrue(LatencyHistogram.upperBound(LatencyHistogram.bucketOf(value)) >= value);
+        }
+        assertEquals(0, new LatencyHistogram().getValueAtQuantile(0.5));
+    }
+
+    @Test
+    void shouldCountOperationsAndExportGauges() {
+        MeteredTaskManager manager = new MeteredTaskManager(Managers.getDefault());
+        Epic epic = new Epic("Эпик", "", 0, TaskStatus.NEW);
+        manager.addEpic(epic);
+        manager.addSubtask(new Subtask("Подзадача", "", 0, TaskStatus.NEW, epic.getId(), Duration.ZERO, null));
+        manager.addTask(new Task("Задача", "", 0, TaskStatus.NEW, Duration.ZERO, null));
+        manager.getEpic(epic.getId());
+        manager.getEpic(epic.getId());
+
+        TaskMetrics metrics = manager.getMetrics();
+        assertEquals(2, metrics.timer("getEpic").getCount());
+        assertEquals(1, metrics.timer("addTask").getCount());
+        assertEquals(0, metrics.timer("deleteTask").getCount());
+
+        String scrape = metrics.scrape();
+        assertTrue(scrape.contains("# TYPE task_manager_operation_seconds summary\n"));
+        assertTrue(scrape.contains("task_manager_operation_seconds_count{operation=\"getEpic\"} 2\n"));
+        assertTrue(scrape.contains("task_manager_operation_seconds{operation=\"addTask\",quantile=\"0.99\"} "));
+        assertTrue(scrape.contains("task_manager_tasks 1\n"));
+        assertTrue(scrape.contains("task_manager_subtasks 1\n"));
+        assertTrue(scrape.contains("task_manager_history_size 1\n"));
+    }
+
+    @Test
+    void shouldMeasureFileBackedPersistence() throws IOException {
+        File file = Files.createTempFile("tasks", ".csv").toFile();
+        try {
+            new FileBackedTaskManager(file).addTask(new Task("Задача", "", 0, TaskStatus.NEW, Duration.ZERO, null));
+            MeteredTaskManager manager = new MeteredTaskManager(FileBackedTaskManager.loadFromFile(file));
+            manager.addTask(new Task("Ещё", "", 0, TaskStatus.NEW, Duration.ZERO, null));
+
+            TaskMetrics metrics = manager.getMetrics();
+            assertEquals(1, metrics.timer("loadFromFile").getCount());
+            assertEquals(1, metrics.timer("save").getCount());
+            assertTrue(metrics.counter("persisted_bytes").sum() > 0);
+            assertTrue(metrics.scrape().contains("# TYPE task_manager_persisted_bytes_total counter\n"));
+        } finally {
+            file.delete();
+        }
+    }
+}
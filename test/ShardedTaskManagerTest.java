@@ -0,0 +1,159 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedTaskManagerTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final int SHARDS = 4;
+
+    private TaskManager taskManager;
+
+    @BeforeEach
+    public void setUp() {
+        taskManager = new ShardedTaskManager(SHARDS);
+    }
+
+    @Test
+    public void shouldKeepSubtasksInTheShardOfTheirEpic() {
+        List<Epic> epics = new ArrayList<>();
+        for (int i = 0; i < SHARDS * 2; i++) {
+            Epic epic = new Epic("Epic " + i, "", 0, TaskStatus.NEW);
+            taskManager.addEpic(epic);
+            epics.add(epic);
+        }
+        for (Epic epic : epics) {
+            taskManager.addSubtask(new Subtask("Subtask", "", 0, TaskStatus.DONE, epic.getId(), Duration.ZERO, null));
+        }
+
+        for (Epic epic : epics) {
+            List<Subtask> subtasks = taskManager.getSubtasksOfEpic(epic.getId());
+            assertEquals(1, subtasks.size());
+            assertEquals(epic.getId() % SHARDS, subtasks.get(0).getId() % SHARDS);
+            assertEquals(TaskStatus.DONE, taskManager.getEpic(epic.getId()).getStatus());
+        }
+        assertEquals(SHARDS, epics.stream().map(epic -> epic.getId() % SHARDS).distinct().count());
+        assertEquals(ids(taskManager.getAllEpics()), ids(epics));
+        assertEquals(ids(epics.subList(3, 6)), ids(taskManager.getAllEpics(epics.get(2).getId(), 3)));
+
+        taskManager.deleteEpic(epics.get(0).getId());
+        assertEquals(SHARDS * 2 - 1, taskManager.getAllSubtasks().size());
+        assertNull(taskManager.getEpic(epics.get(0).getId()));
+    }
+
+    @Test
+    public void shouldMergePrioritizedTasksAndRejectOverlapsAcrossShards() {
+        for (int i = 5; i >= 0; i--) {
+            taskManager.addTask(new Task("Task " + i, "", 0, TaskStatus.NEW, Duration.ofMinutes(30), START.plusHours(i)));
+        }
+        assertThrows(IllegalArgumentException.class, () -> taskManager.addTask(
+                new Task("Overlap", "", 0, TaskStatus.NEW, Duration.ofMinutes(30), START.plusMinutes(10))));
+
+        List<LocalDateTime> starts = taskManager.getPrioritizedTasks().stream()
+                .map(Task::getStartTime).collect(Collectors.toList());
+        assertEquals(List.of(START, START.plusHours(1), START.plusHours(2), START.plusHours(3), START.plusHours(4),
+                START.plusHours(5)), starts);
+        assertEquals(List.of(START.plusHours(2), START.plusHours(3)), taskManager.getPrioritizedTasks(START.plusHours(1), 2)
+                .stream().map(Task::getStartTime).collect(Collectors.toList()));
+
+        Task first = taskManager.getPrioritizedTasks().get(0);
+        first.setStartTime(START.plusHours(10));
+        taskManager.updateTask(first);
+        assertEquals(START.plusHours(10), taskManager.getPrioritizedTasks().get(5).getStartTime());
+        assertEquals(first, taskManager.nextTaskAfter(START.plusHours(6)));
+    }
+
+    @Test
+    public void shouldStreamAcrossShardPagesInOrderAndTolerateWritesDuringTraversal() {
+        int count = 1500;
+        for (int i = 0; i < count; i++) {
+            taskManager.addTask(new Task("Task " + i, "", 0, TaskStatus.NEW, Duration.ofMinutes(1), START.plusMinutes(2L * (count - i))));
+        }
+        assertEquals(ids(taskManager.getAllTasks()), taskManager.streamAllTasks().map(Task::getId).collect(Collectors.toList()));
+        assertEquals(ids(taskManager.getPrioritizedTasks()),
+                taskManager.streamPrioritizedTasks().map(Task::getId).collect(Collectors.toList()));
+
+        int last = taskManager.getAllTasks().get(count - 1).getId();
+        List<Integer> seen = new ArrayList<>();
+        taskManager.streamAllTasks().forEach(task -> {
+            if (seen.isEmpty()) {
+                taskManager.deleteTask(last);
+            }
+            seen.add(task.getId());
+        });
+        assertEquals(count - 1, seen.size());
+        assertEquals(seen.stream().sorted().distinct().collect(Collectors.toList()), seen);
+    }
+
+    @Test
+    public void shouldLinkBatchSubtasksToBatchEpic() {
+        Epic epic = new Epic("Epic", "", -1, TaskStatus.NEW);
+        Subtask subtask = new Subtask("Subtask", "", 0, TaskStatus.IN_PROGRESS, -1, Duration.ofMinutes(15), START);
+        Task task = new Task("Task", "", 0, TaskStatus.NEW, Duration.ofMinutes(15), START.plusHours(1));
+        taskManager.addAll(List.of(subtask, task, epic));
+
+        assertEquals(epic.getId(), subtask.getEpicId());
+        assertEquals(List.of(subtask), taskManager.getSubtasksOfEpic(epic.getId()));
+        assertEquals(TaskStatus.IN_PROGRESS, taskManager.getEpic(epic.getId()).getStatus());
+        assertEquals(List.of(subtask, task), taskManager.getTasksBetween(START, START.plusHours(2)));
+    }
+
+    @Test
+    public void shouldRejectSubtaskReferringToSeveralBatchEpics() {
+        Epic first = new Epic("Epic 1", "", 0, TaskStatus.NEW);
+        Epic second = new Epic("Epic 2", "", 0, TaskStatus.NEW);
+        Subtask subtask = new Subtask("Subtask", "", 0, TaskStatus.NEW, 0, Duration.ofMinutes(15), START);
+
+        assertThrows(IllegalArgumentException.class, () -> taskManager.addAll(List.of(first, second, subtask)));
+        assertTrue(taskManager.getAllEpics().isEmpty());
+        assertTrue(taskManager.getTasksBetween(START, START.plusHours(1)).isEmpty());
+    }
+
+    @Test
+    public void shouldAcceptConcurrentWritesToAllShards() throws Exception {
+        int threads = 8;
+        int perThread = 250;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    Epic epic = new Epic("Epic", "", 0, TaskStatus.NEW);
+                    taskManager.addEpic(epic);
+                    taskManager.addSubtask(new Subtask("Subtask", "", 0, TaskStatus.NEW, epic.getId(),
+                            Duration.ofMinutes(1), START.plusMinutes((long) thread * perThread + i)));
+                    taskManager.addTask(new Task("Task", "", 0, TaskStatus.NEW, Duration.ZERO, null));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        int total = threads * perThread;
+        assertEquals(total, taskManager.getAllEpics().size());
+        assertEquals(total, taskManager.getAllSubtasks().size());
+        assertEquals(total, taskManager.getAllTasks().size());
+        assertEquals(3 * total, taskManager.snapshot().size());
+        for (Epic epic : taskManager.getAllEpics()) {
+            assertEquals(1, taskManager.getSubtasksOfEpic(epic.getId()).size());
+        }
+    }
+
+    private static List<Integer> ids(List<? extends Task> tasks) {
+        return tasks.stream().map(Task::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,189 @@
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskEventBusTest {
+    private final Queue<Runnable> pending = new ArrayDeque<>();
+    private final TaskEventBus bus = new TaskEventBus(pending::add);
+
+    @Test
+    void shouldDeliverQueuedEventsInOneOrderedBatch() {
+        List<List<Integer>> batches = new ArrayList<>();
+        bus.subscribe(events -> batches.add(ids(events)));
+
+        bus.publish(TaskEvent.Type.CREATED, task(1));
+        bus.publish(TaskEvent.Type.UPDATED, task(1));
+        bus.publish(List.of(new TaskEvent(TaskEvent.Type.DELETED, task(2)), new TaskEvent(TaskEvent.Type.DELETED, task(3))));
+        assertEquals(1, pending.size(), "Для одного подписчика планируется одна задача доставки");
+        assertTrue(batches.isEmpty(), "Доставка не выполняется в публикующем потоке");
+
+        runPending();
+        assertEquals(List.of(List.of(1, 1, 2, 3)), batches);
+    }
+
+    @Test
+    void shouldDropEventsAndReportOverflowWhenQueueIsFull() {
+        List<Integer> delivered = new ArrayList<>();
+        List<Integer> overflows = new ArrayList<>();
+        bus.subscribe(new TaskListener() {
+            @Override
+            public void onEvents(List<TaskEvent> events) {
+                delivered.addAll(ids(events));
+            }
+
+            @Override
+            public void onOverflow(int droppedEvents) {
+                overflows.add(droppedEvents);
+            }
+        }, 2);
+
+        for (int id = 1; id <= 5; id++) {
+            bus.publish(TaskEvent.Type.CREATED, task(id));
+        }
+        runPending();
+
+        assertEquals(List.of(1, 2), delivered);
+        assertEquals(List.of(3), overflows);
+    }
+
+    @Test
+    void shouldReportListenerFailuresAndKeepDelivering() {
+        List<List<Integer>> attempts = new ArrayList<>();
+        List<Integer> overflows = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+        bus.subscribe(new TaskListener() {
+            @Override
+            public void onEvents(List<TaskEvent> events) {
+                attempts.add(ids(events));
+                if (attempts.size() == 1) {
+                    throw new IllegalStateException("Сбой слушателя");
+                } else if (attempts.size() == 2) {
+                    throw new AssertionError("Сбой слушателя");
+                }
+            }
+
+            @Override
+            public void onOverflow(int droppedEvents) {
+                overflows.add(droppedEvents);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                errors.add(error);
+            }
+        }, 2);
+
+        for (int id = 1; id <= 3; id++) {
+            bus.publish(TaskEvent.Type.CREATED, task(id));
+        }
+        runPending();
+        bus.publish(TaskEvent.Type.CREATED, task(4));
+        runPending();
+        bus.publish(TaskEvent.Type.CREATED, task(5));
+        runPending();
+
+        assertEquals(List.of(List.of(1, 2), List.of(4), List.of(5)), attempts);
+        assertEquals(List.of(1), overflows, "Переполнение сообщается, даже если onEvents упал");
+        assertEquals(2, errors.size());
+        assertInstanceOf(IllegalStateException.class, errors.get(0));
+        assertInstanceOf(AssertionError.class, errors.get(1));
+    }
+
+    @Test
+    void shouldRescheduleDeliveryAfterExecutorRejection() {
+        List<Integer> delivered = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+        boolean[] rejected = {false};
+        TaskEventBus rejecting = new TaskEventBus(task -> {
+            if (!rejected[0]) {
+                rejected[0] = true;
+                throw new RejectedExecutionException();
+            }
+            pending.add(task);
+        });
+        rejecting.subscribe(new TaskListener() {
+            @Override
+            public void onEvents(List<TaskEvent> events) {
+                delivered.addAll(ids(events));
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                errors.add(error);
+            }
+        });
+
+        rejecting.publish(TaskEvent.Type.CREATED, task(1));
+        rejecting.publish(TaskEvent.Type.CREATED, task(2));
+        runPending();
+
+        assertEquals(List.of(1, 2), delivered);
+        assertEquals(1, errors.size());
+        assertInstanceOf(RejectedExecutionException.class, errors.get(0));
+    }
+
+    @Test
+    void shouldStopDeliveryAfterClose() {
+        List<TaskEvent> delivered = new ArrayList<>();
+        TaskEventBus.Subscription subscription = bus.subscribe(delivered::addAll);
+        bus.publish(TaskEvent.Type.CREATED, task(1));
+
+        subscription.close();
+        bus.publish(TaskEvent.Type.CREATED, task(2));
+        runPending();
+
+        assertTrue(delivered.isEmpty());
+        assertFalse(bus.hasSubscribers());
+    }
+
+    @Test
+    void shouldPublishManagerChangesAsynchronously() throws InterruptedException {
+        TaskManager manager = new InMemoryTaskManager();
+        List<String> received = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        manager.events().subscribe(events -> {
+            for (TaskEvent event : events) {
+                received.add(event.getType() + ":" + event.getId());
+                if (event.getType() == TaskEvent.Type.DELETED && event.getTask() instanceof Epic) {
+                    done.countDown();
+                }
+            }
+        });
+
+        Epic epic = new Epic("Epic", "Description", 0, TaskStatus.NEW);
+        manager.addEpic(epic);
+        Subtask subtask = new Subtask("Subtask", "Description", 0, TaskStatus.NEW, epic.getId(), Duration.ofMinutes(30), null);
+        manager.addSubtask(subtask);
+        subtask.setStatus(TaskStatus.DONE);
+        manager.updateSubtask(subtask);
+        manager.deleteEpic(epic.getId());
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("CREATED:1", "CREATED:2", "EPIC_CHANGED:1", "UPDATED:2", "EPIC_CHANGED:1",
+                "DELETED:2", "DELETED:1"), received);
+    }
+
+    private void runPending() {
+        while (!pending.isEmpty()) {
+            pending.poll().run();
+        }
+    }
+
+    private static Task task(int id) {
+        return new Task("Task", "Description", id, TaskStatus.NEW, Duration.ZERO, null);
+    }
+
+    private static List<Integer> ids(List<TaskEvent> events) {
+        return events.stream().map(TaskEvent::getId).collect(Collectors.toList());
+    }
+}
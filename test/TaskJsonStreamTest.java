@@ -0,0 +1,83 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskJsonStreamTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Test
+    void shouldRestoreStoreLargerThanBufferAndBatch() throws Exception {
+        TaskManager source = Managers.getDefault();
+        int epicCount = TaskJsonStream.BATCH_SIZE + 10;
+        for (int i = 0; i < epicCount; i++) {
+            source.addEpic(new Epic("Эпик " + i, "Описание \"" + i + "\"", 0, TaskStatus.NEW));
+        }
+        List<Epic> epics = source.getAllEpics();
+        for (int i = 0; i < 2 * TaskJsonStream.BATCH_SIZE; i++) {
+            source.addSubtask(new Subtask("Подзадача " + i, null, 0, TaskStatus.DONE,
+                    epics.get(i % epics.size()).getId(), Duration.ofMinutes(5), START.plusMinutes(10L * i)));
+        }
+        source.addTask(new Task("Задача", "", 0, TaskStatus.IN_PROGRESS, Duration.ZERO, null));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long exported = TaskJsonStream.export(source, Channels.newChannel(out));
+        assertTrue(out.size() > TaskJsonStream.BUFFER_SIZE);
+
+        TaskManager target = Managers.getCompact();
+        long imported = TaskJsonStream.importInto(target, Channels.newChannel(new ByteArrayInputStream(out.toByteArray())));
+
+        assertEquals(exported, imported);
+        assertEquals(epicCount + 2L * TaskJsonStream.BATCH_SIZE + 1, imported);
+        assertEquals(summary(source), summary(target));
+    }
+
+    @Test
+    void shouldNotAttachOrphanSubtaskToExistingEpicWithSameId() throws Exception {
+        TaskManager target = Managers.getDefault();
+        Epic existing = new Epic("Эпик менеджера", "", 0, TaskStatus.NEW);
+        target.addEpic(existing);
+        String dump = "{\"id\":7,\"type\":\"EPIC\",\"name\":\"Эпик\",\"status\":\"NEW\"}\n"
+                + "{\"id\":8,\"type\":\"SUBTASK\",\"name\":\"Своя\",\"status\":\"DONE\",\"epicId\":7}\n"
+                + "{\"id\":9,\"type\":\"SUBTASK\",\"name\":\"Сирота\",\"status\":\"DONE\",\"epicId\":"
+                + existing.getId() + "}\n";
+
+        TaskJsonStream.importInto(target, Channels.newChannel(new ByteArrayInputStream(dump.getBytes(StandardCharsets.UTF_8))));
+
+        assertTrue(target.getSubtasksOfEpic(existing.getId()).isEmpty());
+        assertEquals(TaskStatus.NEW, target.getEpic(existing.getId()).getStatus());
+        Epic imported = target.getAllEpics().get(1);
+        assertEquals(List.of("Своя"), target.getSubtasksOfEpic(imported.getId()).stream()
+                .map(Task::getName).collect(Collectors.toList()));
+        Subtask orphan = target.getAllSubtasks().stream().filter(subtask -> subtask.getName().equals("Сирота"))
+                .findFirst().orElseThrow();
+        assertEquals(0, orphan.getEpicId());
+    }
+
+    @Test
+    void shouldReportMalformedLineNumber() {
+        byte[] dump = ("{\"type\":\"TASK\",\"name\":\"Задача\"}\n\n{\"type\":\"NOTE\"}\n").getBytes(StandardCharsets.UTF_8);
+        TaskManager manager = Managers.getDefault();
+
+        TaskJson.MalformedJsonException e = assertThrows(TaskJson.MalformedJsonException.class,
+                () -> TaskJsonStream.importInto(manager, Channels.newChannel(new ByteArrayInputStream(dump))));
+        assertTrue(e.getMessage().startsWith("Строка 3"), e.getMessage());
+    }
+
+    private static List<String> summary(TaskManager manager) {
+        return manager.streamAllEpics()
+                .map(epic -> epic.getName() + "|" + epic.getDescription() + "|" + epic.getStatus() + "|"
+                        + manager.getSubtasksOfEpic(epic.getId()).stream()
+                        .map(subtask -> subtask.getName() + "@" + subtask.getStartTime())
+                        .collect(Collectors.joining(",")))
+                .collect(Collectors.toList());
+    }
+}
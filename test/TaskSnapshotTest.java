@@ -0,0 +1,141 @@
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskSnapshotTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Test
+    void shouldKeepPointInTimeStateInEveryManager() {
+        for (Supplier<TaskManager> factory : List.<Supplier<TaskManager>>of(Managers::getDefault,
+                Managers::getConcurrent, Managers::getCompact)) {
+            TaskManager manager = factory.get();
+            Task task = new Task("Задача", "", 0, TaskStatus.NEW, Duration.ZERO, null);
+            manager.addTask(task);
+            Epic epic = new Epic("Эпик", "", 0, TaskStatus.NEW);
+            manager.addEpic(epic);
+            Subtask subtask = new Subtask("Подзадача", "", 0, TaskStatus.DONE, epic.getId(), Duration.ofMinutes(10), START);
+            manager.addSubtask(subtask);
+
+            TaskSnapshot snapshot = manager.snapshot();
+
+            manager.updateTask(new Task("Изменена", "", task.getId(), TaskStatus.DONE, Duration.ZERO, null));
+            manager.addSubtask(new Subtask("Новая", "", 0, TaskStatus.NEW, epic.getId(), Duration.ZERO, null));
+            manager.deleteEpic(epic.getId());
+
+            String name = manager.getClass().getSimpleName();
+            assertEquals("Задача", snapshot.getAllTasks().get(0).getName(), name);
+            assertEquals(List.of(subtask.getId()), ids(snapshot.getAllSubtasks()), name);
+            Epic copy = snapshot.getEpic(epic.getId());
+            assertEquals(TaskStatus.DONE, copy.getStatus(), name);
+            assertEquals(START, copy.getStartTime(), name);
+            assertEquals(List.of(subtask.getId()), ids(snapshot.getSubtasksOfEpic(epic.getId())), name);
+            assertTrue(manager.getHistory().isEmpty(), "Чтение снимка не попадает в историю: " + name);
+
+            TaskSnapshot after = manager.snapshot();
+            assertTrue(after.getAllEpics().isEmpty(), name);
+            assertTrue(after.getAllSubtasks().isEmpty(), name);
+            assertEquals(TaskStatus.DONE, after.getTask(task.getId()).getStatus(), name);
+        }
+    }
+
+    @Test
+    void shouldNotChangeWhenTaskIsEditedInPlaceAndUpdated() {
+        for (Supplier<TaskManager> factory : List.<Supplier<TaskManager>>of(Managers::getDefault,
+                Managers::getConcurrent, Managers::getCompact, Managers::getSharded)) {
+            TaskManager manager = factory.get();
+            Task task = new Task("Задача", "", 0, TaskStatus.NEW, Duration.ZERO, null);
+            manager.addTask(task);
+            Epic epic = new Epic("Эпик", "", 0, TaskStatus.NEW);
+            manager.addEpic(epic);
+            Subtask subtask = new Subtask("Подзадача", "", 0, TaskStatus.NEW, epic.getId(), Duration.ofMinutes(10), START);
+            manager.addSubtask(subtask);
+
+            TaskSnapshot snapshot = manager.snapshot();
+
+            task.setName("Изменена");
+            task.setStatus(TaskStatus.DONE);
+            manager.updateTask(task);
+            subtask.setStatus(TaskStatus.DONE);
+            subtask.setStartTime(START.plusDays(1));
+            manager.updateSubtask(subtask);
+            snapshot.getTask(task.getId()).setName("Чужая правка");
+
+            String name = manager.getClass().getSimpleName();
+            Task old = snapshot.getTask(task.getId());
+            assertEquals("Задача", old.getName(), name);
+            assertEquals(TaskStatus.NEW, old.getStatus(), name);
+            Subtask oldSubtask = snapshot.getSubtask(subtask.getId());
+            assertEquals(TaskStatus.NEW, oldSubtask.getStatus(), name);
+            assertEquals(START, oldSubtask.getStartTime(), name);
+            Epic oldEpic = snapshot.getEpic(epic.getId());
+            assertEquals(TaskStatus.NEW, oldEpic.getStatus(), name);
+            assertEquals(START, oldEpic.getStartTime(), name);
+
+            TaskSnapshot after = manager.snapshot();
+            assertEquals("Изменена", after.getTask(task.getId()).getName(), name);
+            assertEquals(TaskStatus.DONE, after.getEpic(epic.getId()).getStatus(), name);
+        }
+    }
+
+    @Test
+    void shouldNeverSeeSubtaskWithoutItsEpicUnderConcurrentWrites() throws Exception {
+        TaskManager manager = Managers.getConcurrent();
+        manager.snapshot();
+        ExecutorService writers = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            futures.add(writers.submit(() -> {
+                for (int i = 0; i < 300; i++) {
+                    Epic epic = new Epic("Эпик", "", 0, TaskStatus.NEW);
+                    manager.addEpic(epic);
+                    manager.addAll(List.of(new Subtask("А", "", 0, TaskStatus.NEW, epic.getId(), Duration.ZERO, null),
+                            new Subtask("Б", "", 0, TaskStatus.DONE, epic.getId(), Duration.ZERO, null)));
+                    manager.deleteEpic(epic.getId());
+                }
+            }));
+        }
+        while (!futures.stream().allMatch(Future::isDone)) {
+            TaskSnapshot snapshot = manager.snapshot();
+            for (Subtask subtask : snapshot.getAllSubtasks()) {
+                assertNotNull(snapshot.getEpic(subtask.getEpicId()), "Подзадача без эпика в снимке");
+            }
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        writers.shutdown();
+        assertTrue(writers.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(0, manager.snapshot().size());
+    }
+
+    @Test
+    void shouldShareStructureBetweenVersionsOfPersistentMap() {
+        PersistentIdMap<String> empty = PersistentIdMap.empty();
+        PersistentIdMap<String> first = empty.with(5, "a").with(40_000, "b");
+        PersistentIdMap<String> second = first.with(5, "c").without(40_000).with(70, "d");
+
+        assertEquals(0, empty.size());
+        assertEquals(List.of("a", "b"), first.values());
+        assertEquals(List.of("c", "d"), second.values());
+        assertEquals(List.of("d"), second.page(5, 10));
+        assertNull(second.get(40_000));
+        assertSame(second, second.without(12));
+        assertTrue(second.without(5).without(70).isEmpty());
+    }
+
+    private static List<Integer> ids(List<? extends Task> tasks) {
+        return tasks.stream().map(Task::getId).collect(Collectors.toList());
+    }
+}